@@ -1,7 +1,7 @@
 /*
  * Assignment 01
  * Filename: Ngrams.java
- * Version: 1.1
+ * Version: 1.2
  * Author:  Matthew Morgan
  * Description:
  * This program reads from a set of text files (referred to as the Gutenberg
@@ -24,6 +24,9 @@
  * Version 1.1 (3 April 2018)
  * - Fixed an error where not specifying a relative path would confuse the
  *   program when trying to parse what directory to store output files in
+ * Version 1.2 (18 October 2026)
+ * - N-gram frequencies are counted in ObjIntMaps (see ../Common) rather than
+ *   Hashtables of Gram objects; Grams are only built when writing results
  */
 
 // Import statements
@@ -34,7 +37,6 @@ import java.io.PrintWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Hashtable;
 import java.util.Collections;
 import java.util.ListIterator;
 import java.lang.Comparable;
@@ -49,6 +51,7 @@ class Gram implements Comparable<Gram> {
     private String word;    // The gram itself, as a String (example: "the")
 
     public Gram(String wd) { frequency=1; word=wd; }
+    public Gram(String wd, int freq) { frequency=freq; word=wd; }
     public Gram(char c) { frequency=0; word=Character.toString(c); }
 
     // Accessor methods
@@ -102,13 +105,13 @@ public class Ngrams {
         }
 
         // cntChars is used to store character frequencies.
-        // cntGrams is used to store references to hashtables for n-grams.
+        // cntGrams is used to store references to frequency maps for n-grams.
         Gram cntChars[] = new Gram[26];
-        ArrayList<Hashtable<String,Gram>> cntGrams = new ArrayList<>(GRAM_COUNT);
+        ArrayList<ObjIntMap<String>> cntGrams = new ArrayList<>(GRAM_COUNT);
 
         // Initialize the character frequency array and list to default values
         for(int i=0; i<26; i++) { cntChars[i] = new Gram((char)(i+'a')); }
-        for(int i=0; i<GRAM_COUNT; i++) { cntGrams.add(new Hashtable<>()); }
+        for(int i=0; i<GRAM_COUNT; i++) { cntGrams.add(new ObjIntMap<>(0)); }
 
         if (!SINGLE_INPUT_MODE) {
             // Read in the list of corpus entries
@@ -261,10 +264,10 @@ public class Ngrams {
      * Reads an entire, single corpus entry from the given input file
      * @param path The path to the file that contains a corpus entry
      * @param cntChr Array of character frequencies
-     * @param cntGram List of hashtables containing n-gram frequency information
+     * @param cntGram List of maps containing n-gram frequency information
      */
     public static void readCorpusEntry(String path, Gram[] cntChr,
-                                       ArrayList<Hashtable<String,Gram>> cntGram) {
+                                       ArrayList<ObjIntMap<String>> cntGram) {
         // Attempt to open the corpus entry and read lines, one at a time, to
         // process and count character and n-gram frequencies
         try {
@@ -303,12 +306,12 @@ public class Ngrams {
      * bigram, and trigram occurrences (or up to n-grams).
      * @param line The line of text to be processed
      * @param cntChr Array containing character frequency information
-     * @param cntGram List of hashtables containing n-gram frequency information
+     * @param cntGram List of maps containing n-gram frequency information
      * @param wdPattern Pattern object for usage in matching words
      * @param strGrams Array of strings which help in processing n-grams
      */
     public static void processLine(String line, Gram[] cntChr,
-                                   ArrayList<Hashtable<String,Gram>> cntGram, Pattern wdPattern,
+                                   ArrayList<ObjIntMap<String>> cntGram, Pattern wdPattern,
                                    String[] strGrams) {
         // wdMatcher is a matcher for detecting words in the line being processed
         Matcher wdMatcher = wdPattern.matcher(line);
@@ -344,22 +347,19 @@ public class Ngrams {
     }
 
     /**
-     * Increments the frequency of the nth gram in its respective hashtable.
+     * Increments the frequency of the nth gram in its respective map.
      * @param gram The gram to update the frequency of
      * @param n What type of n-gram 'gram' is (1 for uni, 2 for bi, etc)
-     * @param cntGram List of hashtables containing n-gram frequency information
+     * @param cntGram List of maps containing n-gram frequency information
      */
     public static void incGramFrequency(String gram, int n,
-                                        ArrayList<Hashtable<String,Gram>> cntGram) {
-        // Hashtable that contains all the n-grams where 'gram' belongs.
-        Hashtable<String,Gram> gramTable = cntGram.get(n);
-
-        // Increment the frequency if the gram exists in the table already, or
-        // set the frequency to 1 if this is the gram's first occurrence.
-        Gram g = gramTable.putIfAbsent(gram, new Gram(gram));
-        if (g != null)
-            g.incFreq();
-        else
+                                        ArrayList<ObjIntMap<String>> cntGram) {
+        // Map of frequencies for all the n-grams where 'gram' belongs.
+        ObjIntMap<String> gramTable = cntGram.get(n);
+
+        // Increment the frequency of the gram; a frequency of 1 afterwards means
+        // this is the gram's first occurrence.
+        if (gramTable.increment(gram, 1) == 1)
         if (DEBUG_ENABLED && !DEBUG_SUPPRESS_NEWGRAM)
             System.out.printf("    " + "New %d-Gram: '%s'\n", n+1, gram);
     }
@@ -396,16 +396,16 @@ public class Ngrams {
     /**
      * Writes frequencies for n-grams into an output file.
      * @param path The path of the file to write the data to
-     * @param cntGrams A list of hashtables that store frequency information
+     * @param cntGrams A list of maps that store frequency information
      *        for n-grams
      */
-    public static void writeFreqGram(String path, ArrayList<Hashtable<String,Gram>> cntGrams) {
+    public static void writeFreqGram(String path, ArrayList<ObjIntMap<String>> cntGrams) {
         // Attempt to open the file for gram frequencies, write those frequencies to
         // the file (with separators between each n-gram section), and then close
         // the file.
         try {
             // PrintWriter to write gram frequency data to the file
-            // ArrayList created from translating a gram Hashtable into a list
+            // ArrayList created from translating a gram frequency map into a list
             // ListIterator created from the sorted list of n-grams
             PrintWriter grFile = new PrintWriter(new File(path));
             ArrayList<Gram> listNGram;
@@ -417,9 +417,12 @@ public class Ngrams {
                 if (DEBUG_ENABLED) { System.out.println("    Sorting and printing "+
                     (i+1)+"-grams."); }
 
-                // Setup: Translate the i-th gram hashtable into an ArrayList, sort
-                // it, and then generate an iterator from it.
-                listNGram = Collections.list(cntGrams.get(i).elements());
+                // Setup: Translate the i-th gram frequency map into an ArrayList,
+                // sort it, and then generate an iterator from it.
+                ObjIntMap<String> gramTable = cntGrams.get(i);
+                listNGram = new ArrayList<>(gramTable.size());
+                for(String wd : gramTable.keys())
+                    listNGram.add(new Gram(wd, gramTable.get(wd)));
                 listNGram.sort(ENFORCE_SORT_REV ? Collections.reverseOrder():null);
                 iterator = listNGram.listIterator();
 
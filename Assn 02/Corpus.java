@@ -21,31 +21,62 @@
  */
 
 // Import statements
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.Scanner;
 
 public class Corpus {
-    // dictionary is a hashtable of tokens that store postings lists amongst the documents
+    // dictionary is a map of tokens that store postings lists amongst the documents
     // INDEX_OVERWRITE is a boolean toggle for whether or not to overwrite the index during execution
     // query is a reference to the Query object that will handle inquiries into the corpus' index
-    private static Hashtable<String,Token> dictionary = new Hashtable<>();
+    // seekPos and seekOff are the seek checkpoints of each corpus entry: the word positions at
+    // the starts of lines, at least SEEK_INTERVAL words apart, and the byte offsets of those lines
+    private static HashMap<String,Token> dictionary = new HashMap<>();
     private static boolean INDEX_OVERWRITE = false;
     private static Query query = new Query();
+    private static ArrayList<IntList> seekPos = new ArrayList<>(), seekOff = new ArrayList<>();
+
+    // biwords is the dictionary of biwords: pairs of different stems that are next to each other
+    // often enough, keyed as 'a_b' and holding the positions of 'a' that have a 'b' on either side
+    // stemIDs numbers the stems of the dictionary in the order they're met, and stemNames is the
+    // stem of each number. sequences are the stems of each entry, as numbers, in order
+    private static HashMap<String,Token> biwords = new HashMap<>();
+    private static HashMap<String,Integer> stemIDs = new HashMap<>();
+    private static ArrayList<String> stemNames = new ArrayList<>();
+    private static ArrayList<IntList> sequences = new ArrayList<>();
 
     // DIR_INDEX is a constant, specifying the index directory
     // FIL_DOCS is a constant, specifying the location of the document association text file
+    // FIL_SEEK is a constant, specifying the location of the seek checkpoints of the documents
     // EXT_TOKEN is a constant, specifying the file extension of token text files
+    // SEEK_INTERVAL is the least number of words between the seek checkpoints of a document
+    // SHARD_BUFFER is the size of the buffer each token file is written through
+    // FIL_BIWORDS is the name of the token file of the biwords, and LEX_BIWORDS the location of
+    // their lexicon. BIWORD_MIN_COUNT is the number of times two stems must be next to each other
+    // (in either order) for them to be indexed as a biword, and BIWORD_SEP separates the stems of
+    // a biword's key
     public static final String DIR_INDEX = "./index/",
         FIL_DOCS = DIR_INDEX + "documents.ind",
-        EXT_TOKEN = ".tok";
+        FIL_SEEK = DIR_INDEX + "seek.ind",
+        EXT_TOKEN = ".tok",
+        FIL_BIWORDS = "biwords" + EXT_TOKEN,
+        LEX_BIWORDS = DIR_INDEX + "biwords",
+        BIWORD_SEP = "_";
+    public static final int SEEK_INTERVAL = 1024, SHARD_BUFFER = 1 << 20, BIWORD_MIN_COUNT = 8;
 
     public static void main(String[] args) {
         argumentCheck(args);
@@ -60,8 +91,9 @@ public class Corpus {
             indexSave(corpus);
         }
 
-        // Clear the Hashtable to clear up memory before processing phrase queries
+        // Clear the dictionaries to clear up memory before processing phrase queries
         dictionary.clear();
+        biwords.clear();
         query.query();
     }
 
@@ -141,7 +173,9 @@ public class Corpus {
 
     /**
      * Reads all the entries in the corpus, processing their data to create a dictionary
-     * of tokens and their postings lists
+     * of tokens and their postings lists. The word position and byte offset of a line
+     * are noted as a seek checkpoint every SEEK_INTERVAL words or so, so that a seek
+     * can start reading a document near the position it's after
      * @param corpus List of filenames that represent entries in the corpus
      */
     public static void generateCorpus(ArrayList<String> corpus) {
@@ -151,21 +185,33 @@ public class Corpus {
 
             System.out.println("  "+path);
             
-            // Try to open the text file, process it line by line, and then lose the file
-            // after finished processing
+            // Try to read the text file, and process it line by line. Lines are split from
+            // the file's bytes, rather than read by a reader, so their offsets are known
             try {
-                // file will be used to read lines from the file, with each line being
-                // stored inside of the variable line. docLoc tracks the current location
-                // of document processing
-                BufferedReader file = new BufferedReader(new FileReader(new File(path)));
-                String line;
-                int docLoc = 1;
-
-                // While lines are being read from the file, process those lines
-                while((line = file.readLine()) != null)
-                    docLoc = processLine(line, i, docLoc);
-
-                file.close();
+                // data is the content of the file, and at is the offset of the current line,
+                // which ends at the newline at 'end.' docLoc tracks the current location of
+                // document processing, and next is where the next checkpoint is due
+                byte[] data = Files.readAllBytes(new File(path).toPath());
+                int docLoc = 1, next = 1;
+                IntList pos = new IntList(), off = new IntList();
+                seekPos.add(pos);
+                seekOff.add(off);
+                sequences.add(new IntList());
+
+                for(int at=0, end; at<data.length; at=end+1) {
+                    for(end=at; end<data.length && data[end]!='\n'; end++);
+
+                    if (docLoc >= next) {
+                        pos.add(docLoc);
+                        off.add(at);
+                        next = docLoc + SEEK_INTERVAL;
+                    }
+
+                    // len is the length of the line, without its line terminator
+                    int len = end - at;
+                    if (len > 0 && data[end-1] == '\r') { len--; }
+                    docLoc = processLine(new String(data, at, len, Charset.defaultCharset()), i, docLoc);
+                }
             }
             catch(IOException e) {
                 System.err.printf("SYS: Error during file handling on file '%s'!\n", path);
@@ -173,6 +219,74 @@ public class Corpus {
                 System.exit(1);
             }
         }
+
+        generateBiwords();
+    }
+
+    /**
+     * Indexes the biwords of the corpus: every pair of different stems next to each other at least
+     * BIWORD_MIN_COUNT times, in either order. Pairs are counted by sorting them, each packed into
+     * a long as its smaller stem number above its larger, and each pair counted often enough is
+     * indexed both ways round, so that 'a_b' holds the positions of 'a' with a 'b' on either side
+     * (exactly the positions a phrase query of 'a b' finds) and 'b_a' those of 'b'
+     */
+    private static void generateBiwords() {
+        // pairs are the packed pairs of every adjacent two stems, of which n are used
+        // selected are the tokens of each pair counted often enough, 'a_b' then 'b_a' for a < b
+        int n = 0;
+        for(IntList seq : sequences) { n += Math.max(0, seq.size()-1); }
+        long[] pairs = new long[n];
+        HashMap<Long,Token[]> selected = new HashMap<>();
+
+        n = 0;
+        for(IntList seq : sequences)
+            for(int k=0; k+1<seq.size(); k++)
+                if (seq.get(k) != seq.get(k+1)) { pairs[n++] = pairKey(seq.get(k), seq.get(k+1)); }
+        Arrays.sort(pairs, 0, n);
+
+        // Runs of the same pair in the sorted list are its count
+        for(int i=0, j; i<n; i=j) {
+            for(j=i+1; j<n && pairs[j]==pairs[i]; j++);
+            if (j-i < BIWORD_MIN_COUNT) { continue; }
+
+            String a = stemNames.get((int)(pairs[i] >>> 32)), b = stemNames.get((int)pairs[i]);
+            Token[] bt = { new Token(a+BIWORD_SEP+b), new Token(b+BIWORD_SEP+a) };
+            selected.put(pairs[i], bt);
+            biwords.put(bt[0].getToken(), bt[0]);
+            biwords.put(bt[1].getToken(), bt[1]);
+        }
+
+        // Walk the entries again, adding the positions of both stems of each selected pair
+        for(int d=0; d<sequences.size(); d++) {
+            IntList seq = sequences.get(d);
+            for(int k=0; k+1<seq.size(); k++) {
+                int a = seq.get(k), b = seq.get(k+1);
+                Token[] bt = (a == b ? null : selected.get(pairKey(a, b)));
+                if (bt == null) { continue; }
+
+                biwordAdd(bt[a < b ? 0 : 1], d, k+1);
+                biwordAdd(bt[a < b ? 1 : 0], d, k+2);
+            }
+        }
+
+        sequences.clear();
+    }
+
+    /** Packs a pair of stem numbers into a long, the smaller number above the larger */
+    private static long pairKey(int a, int b) {
+        return ((long)Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    /**
+     * Adds a position to a biword, unless it's already there (a stem between two of the same stem
+     * is next to both)
+     * @param t The biword
+     * @param docID The ID of the document
+     * @param loc The position of the biword's first stem
+     */
+    private static void biwordAdd(Token t, int docID, int loc) {
+        if (!t.isInDoc(docID)) { t.addDoc(docID); }
+        if (!t.isInDocatLoc(docID, loc)) { t.addDocLocation(docID, loc); }
     }
 
     /**
@@ -195,9 +309,14 @@ public class Corpus {
                 // The token that's been stemmed and a reference to the token object
                 // representing the stemmed token
                 String token = Token.stemToken(word);
-                Token t = dictionary.putIfAbsent(token, new Token(token));
-                if (t == null)
-                    t = dictionary.get(token);
+                Token t = dictionary.get(token);
+                if (t == null) {
+                    t = new Token(token);
+                    dictionary.put(token, t);
+                    stemIDs.put(token, stemNames.size());
+                    stemNames.add(token);
+                }
+                sequences.get(docID).add(stemIDs.get(token));
 
                 // Add the document to the index if it doesn't exist yet
                 if (!t.isInDoc(docID))
@@ -250,11 +369,12 @@ public class Corpus {
     public static void indexSave(ArrayList<String> corpus) {
         try {
             // list is a list of the keys (tokens) in the dictionary. file is used for writing data
-            // to files in the index. tokCat specifies which tokens are currently being written
-            // (for example, 'a' for all tokens starting with an 'a')
-            ArrayList<String> list = Collections.list(dictionary.keys());
+            // to files in the index
+            // counts is the number of tokens written to each token file, which sizes the Bloom
+            // filters of the lexicon
+            ArrayList<String> list = new ArrayList<>(dictionary.keySet());
             BufferedWriter file;
-            char tokCat = ' ';
+            HashMap<String,Integer> counts = new HashMap<>();
 
             // Write the entries of the corpus into the "document association" file, where
             // the integer index of an entry serves as its document ID
@@ -263,55 +383,135 @@ public class Corpus {
             for(int i=0; i<corpus.size(); i++)
                 file.write(corpus.get(i)+"\n");
             file.close();
+
+            // Write the seek checkpoints of each entry on its own line, in the format:
+            // <count> <pos> <offset> <pos> <offset> ...
+            file = new BufferedWriter(new FileWriter(new File(FIL_SEEK)));
+            for(int i=0; i<seekPos.size(); i++) {
+                file.write(Integer.toString(seekPos.get(i).size()));
+                for(int k=0; k<seekPos.get(i).size(); k++)
+                    file.write(" "+seekPos.get(i).get(k)+" "+seekOff.get(i).get(k));
+                file.write("\n");
+            }
+            file.close();
             file = null;
 
-            // After sorting the list of keys, append token information to token data files
+            // After sorting the list of keys, split them into shards of about the same size, by
+            // the estimated length of each token's postings (a few characters for each document
+            // and position)
             Collections.sort(list);
-            for(String token : list) {
-                // Transition to a new token data file if the first character of the next token doesn't
-                // match that of the ones being written in the current file.
-                if (token.charAt(0)!=tokCat) {
-                    if (file!=null) { file.close(); }
-                    tokCat = token.charAt(0);
-                    file = new BufferedWriter(new FileWriter(DIR_INDEX+tokCat+EXT_TOKEN, true));
-                }
-
-                indexSaveToken(dictionary.get(token), file);
+            long[] weight = new long[list.size()];
+            for(int i=0; i<list.size(); i++) {
+                Token t = dictionary.get(list.get(i));
+                weight[i] = list.get(i).length() + 10L*t.getIndex().size() + 7L*t.getFreq();
             }
-            
-            file.close();
+            ShardMap shards = ShardMap.partition(list, weight);
+            for(int k=0; k<shards.size(); k++)
+                counts.put(shards.file(k), shards.to(k)-shards.from(k));
+            Lexicon lexicon = new Lexicon(Lexicon.LEX_TOKENS, counts);
+
+            // The biwords are written to a file of their own, with a lexicon of their own
+            ArrayList<String> biList = new ArrayList<>(biwords.keySet());
+            Collections.sort(biList);
+            HashMap<String,Integer> biCounts = new HashMap<>();
+            biCounts.put(FIL_BIWORDS, biList.size());
+            Lexicon biLexicon = new Lexicon(LEX_BIWORDS, biCounts);
+
+            // Write the shards and the biwords concurrently, each noting where its tokens start in its file
+            ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(shards.size()+1, Runtime.getRuntime().availableProcessors())));
+            ArrayList<Future<long[]>> offsets = new ArrayList<>();
+            for(int k=0; k<shards.size(); k++) {
+                final int shard = k;
+                offsets.add(pool.submit(() -> indexSaveShard(dictionary, list, shards.from(shard),
+                    shards.to(shard), shards.file(shard))));
+            }
+            Future<long[]> biOffsets = pool.submit(() -> indexSaveShard(biwords, biList, 0,
+                biList.size(), FIL_BIWORDS));
+            pool.shutdown();
+
+            // Add the tokens to the lexicon in order, as each shard's offsets become available
+            for(int k=0; k<shards.size(); k++) {
+                long[] offset = offsets.get(k).get();
+                for(int i=shards.from(k); i<shards.to(k); i++)
+                    lexicon.add(new Lexicon.Entry(list.get(i), shards.file(k),
+                        offset[i-shards.from(k)], dictionary.get(list.get(i)).getIndex().size()));
+            }
+            long[] offset = biOffsets.get();
+            for(int i=0; i<biList.size(); i++)
+                biLexicon.add(new Lexicon.Entry(biList.get(i), FIL_BIWORDS, offset[i],
+                    biwords.get(biList.get(i)).getIndex().size()));
+
+            lexicon.save();
+            biLexicon.save();
+            shards.save();
         }
-        catch(IOException e) {
+        catch(IOException | InterruptedException | ExecutionException e) {
             System.err.println("SYS: Error during index saving!");
             System.err.println(e.getMessage());
             System.exit(1);
         }
     }
 
+    /**
+     * Writes a range of sorted tokens to a token file
+     * @param dict The dictionary the tokens are in
+     * @param list The sorted tokens of the dictionary
+     * @param from The index of the first token in the range
+     * @param to The index after the last token in the range
+     * @param name The name of the token file, within the index directory
+     * @return The byte offset in the file where each of the range's tokens starts
+     */
+    private static long[] indexSaveShard(HashMap<String,Token> dict, ArrayList<String> list,
+        int from, int to, String name) throws IOException {
+        // file is the token file, and offset where the next token's information starts
+        BufferedWriter file = new BufferedWriter(new FileWriter(DIR_INDEX+name), SHARD_BUFFER);
+        long[] res = new long[to-from];
+        long offset = 0;
+
+        for(int i=from; i<to; i++) {
+            res[i-from] = offset;
+            offset += indexSaveToken(dict.get(list.get(i)), file);
+        }
+
+        file.close();
+        return res;
+    }
+
     /**
      * Writes token information to a text file
      * @param t The token to save the information of
      * @param file The file where the token's information is being written
+     * @return The number of bytes written (token files only ever hold ASCII, as
+     *   preprocessing strips every other character)
      */
-    public static void indexSaveToken(Token t, BufferedWriter file) {
+    public static int indexSaveToken(Token t, BufferedWriter file) {
+        // rec is the token's information, built up before it's written
+        StringBuilder rec = new StringBuilder();
+
         try {
-            file.write(t.getToken()+"\n");
-            for(TokenIndexDocument doc : Collections.list(t.getIndex().elements())) {
-                // index is the current document's postings list
-                ArrayList<Integer> index = doc.getLocations();
+            rec.append(t.getToken()).append('\n');
+            for(int id : t.getDocIDs()) {
+                // doc is the current document, and index is its postings list
+                TokenIndexDocument doc = t.getDoc(id);
+                int[] index = doc.getLocations();
 
                 // Write the postings list in the format: { loc loc loc }
-                file.write(doc.getID()+" { ");
-                for(int i=0; i<index.size(); i++)
-                    file.write(index.get(i)+" ");
-                file.write("}\n");
+                rec.append(doc.getID()).append(" { ");
+                for(int loc : index)
+                    rec.append(loc).append(' ');
+                rec.append("}\n");
             }
+
+            file.write(rec.toString());
         }
         catch(IOException e) {
             System.err.println("SYS: Error during token save!");
             System.err.println(e.getMessage());
             System.exit(1);
         }
+
+        return rec.length();
     }
 
     /**
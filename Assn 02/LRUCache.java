@@ -0,0 +1,89 @@
+/*
+ * Assignment 02
+ * File:    LRUCache.java
+ * Date:    18 October 2026
+ * Author:  Matthew Morgan
+ * Description:
+ * LRUCache keeps the results of recent work, such as the decoded postings of
+ * tokens read from the index, within a budget of memory. Each value is stored
+ * with an estimate of the bytes it holds, and when the values stored exceed
+ * the budget, the least recently used are evicted until they fit again. Hits,
+ * misses, and evictions are counted so the cache's effect can be reported.
+ */
+
+// Import statements
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+class LRUCache<K,V> {
+    // name is the name the cache is reported under
+    // budget is the most bytes the values stored may hold, and bytes the number they hold
+    // hits, misses, and evictions count the lookups that found a value, the lookups
+    // that didn't, and the values evicted to make room for others
+    // map holds the values, from least to most recently used
+    private String name;
+    private long budget, bytes = 0, hits = 0, misses = 0, evictions = 0;
+    private LinkedHashMap<K,Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+
+    /* Entry is a value stored in the cache, and the bytes it holds */
+    private static class Entry<V> {
+        V val;
+        long bytes;
+
+        Entry(V val, long bytes) { this.val = val; this.bytes = bytes; }
+    }
+
+    /**
+     * Instantiates an empty cache
+     * @param name The name the cache is reported under
+     * @param budget The most bytes the values stored may hold
+     */
+    public LRUCache(String name, long budget) {
+        this.name = name;
+        this.budget = budget;
+    }
+
+    /**
+     * Looks a value up, marking it as the most recently used
+     * @param key The key of the value
+     * @return The value, or null if it isn't in the cache
+     */
+    public V get(K key) {
+        Entry<V> e = map.get(key);
+        if (e == null) { misses++; return null; }
+
+        hits++;
+        return e.val;
+    }
+
+    /**
+     * Stores a value, evicting the least recently used values until the cache is within its
+     * budget. A value larger than the whole budget isn't stored
+     * @param key The key of the value
+     * @param val The value
+     * @param size The estimated number of bytes the value holds
+     */
+    public void put(K key, V val, long size) {
+        if (size > budget) { return; }
+
+        Entry<V> prev = map.put(key, new Entry<>(val, size));
+        if (prev != null) { bytes -= prev.bytes; }
+        bytes += size;
+
+        // The value just stored is the most recently used, so it's never reached here
+        Iterator<Entry<V>> it = map.values().iterator();
+        while(bytes > budget) {
+            bytes -= it.next().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /** Prints the number of values stored, the MB (2^20 bytes) they hold, and the hit rate of the cache */
+    public void printStats() {
+        long lookups = hits+misses;
+        System.out.printf("  %-13s: %,d entries, %.1f of %.1f MB, %,d hits / %,d lookups (%.1f%%), %,d evicted\n",
+            name, map.size(), (double)bytes/(1 << 20), (double)budget/(1 << 20), hits, lookups,
+            (lookups == 0 ? 0.0 : 100.0*hits/lookups), evictions);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Assignment 02
+ * File:    Lexicon.java
+ * Date:    18 October 2026
+ * Author:  Matthew Morgan
+ * Description:
+ * Lexicon contains two classes - Lexicon and BloomFilter - which let a query
+ * find a token's postings without scanning the token files. A lexicon is a
+ * text file in the index directory with a line for every token, sorted the
+ * same way as the token files (the index has one for its tokens, and one for
+ * its biwords):
+ *   <stem> <token file> <byte offset of the token's line> <document frequency>
+ * Lines are found by binary search over the bytes of the file, seeking to the
+ * middle of the range and reading the first line that starts there, so a lookup
+ * reads O(log n) lines however large the index is. Beside it, a Bloom filter
+ * of the stems in each token file is saved, so a term that isn't in the index
+ * is almost always rejected without reading anything from the disk.
+ */
+
+// Import statements
+import java.util.HashMap;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.RandomAccessFile;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Lexicon writes the lexicon and Bloom filters while the index is saved, and
+ * looks tokens up in them while queries are processed.
+ */
+
+class Lexicon {
+    // LEX_TOKENS is the location of the lexicon of the tokens, without an extension
+    // EXT_LEXICON and EXT_BLOOM are the extensions of the lexicon file, and of the file holding
+    // the Bloom filter of each token file
+    // READ is the number of bytes first read around a line of the lexicon
+    public static final String LEX_TOKENS = Corpus.DIR_INDEX + "lexicon",
+        EXT_LEXICON = ".lex", EXT_BLOOM = ".blm";
+    private static final int READ = 256;
+
+    // loc is the location of the lexicon, without an extension
+    // out is the lexicon file being written (null when reading)
+    // lex is the lexicon file being read (null when writing)
+    // blooms are the Bloom filters of the token files, keyed by filename
+    // span is the start and end offsets of the last line read from the lexicon
+    // shards is the map of the token files, which tells whose Bloom filter to check for a stem
+    private String loc;
+    private BufferedWriter out = null;
+    private RandomAccessFile lex = null;
+    private HashMap<String,BloomFilter> blooms = new HashMap<>();
+    private long[] span = new long[2];
+    private ShardMap shards = null;
+
+    /*
+     * Entry is a single line of the lexicon: where a token's postings start
+     * in the token files, and the number of documents it occurs in
+     */
+    public static class Entry {
+        public String stem, file;
+        public long offset;
+        public int df;
+
+        public Entry(String stem, String file, long offset, int df) {
+            this.stem = stem;
+            this.file = file;
+            this.offset = offset;
+            this.df = df;
+        }
+    }
+
+    /**
+     * Starts writing a lexicon, with a Bloom filter sized for each token file
+     * @param loc The location of the lexicon, without an extension
+     * @param counts The number of tokens that will be written to each token file
+     */
+    public Lexicon(String loc, HashMap<String,Integer> counts) throws IOException {
+        this.loc = loc;
+        out = new BufferedWriter(new FileWriter(loc+EXT_LEXICON));
+        for(String file : counts.keySet())
+            blooms.put(file, new BloomFilter(counts.get(file)));
+    }
+
+    private Lexicon(String loc) { this.loc = loc; }
+
+    /**
+     * Adds a token to the lexicon. Tokens must be added in sorted order
+     * @param e The lexicon entry of the token
+     */
+    public void add(Entry e) throws IOException {
+        out.write(e.stem+" "+e.file+" "+e.offset+" "+e.df+"\n");
+        blooms.get(e.file).add(e.stem);
+    }
+
+    /** Finishes writing the lexicon, and saves the Bloom filters beside it */
+    public void save() throws IOException {
+        out.close();
+
+        DataOutputStream bf = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(loc+EXT_BLOOM)));
+        bf.writeInt(blooms.size());
+        for(String file : blooms.keySet()) {
+            bf.writeUTF(file);
+            blooms.get(file).write(bf);
+        }
+        bf.close();
+    }
+
+    /**
+     * Opens a lexicon of the index for lookups, loading the Bloom filters into memory
+     * @param loc The location of the lexicon, without an extension
+     * @param shards The map of the token files the lexicon's tokens are in
+     * @return The lexicon, or null if the index was saved without it
+     */
+    public static Lexicon open(String loc, ShardMap shards) throws IOException {
+        if (!(new File(loc+EXT_LEXICON)).exists() || !(new File(loc+EXT_BLOOM)).exists())
+            return null;
+
+        Lexicon res = new Lexicon(loc);
+        res.shards = shards;
+        res.lex = new RandomAccessFile(loc+EXT_LEXICON, "r");
+
+        DataInputStream bf = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(loc+EXT_BLOOM)));
+        for(int n=bf.readInt(); n>0; n--)
+            res.blooms.put(bf.readUTF(), BloomFilter.read(bf));
+        bf.close();
+
+        return res;
+    }
+
+    /**
+     * Looks a stemmed token up in the lexicon
+     * @param stem The stemmed token
+     * @return The lexicon entry of the token, or null if it isn't in the index
+     */
+    public Entry find(String stem) throws IOException {
+        // The Bloom filter of the token file the stem would be in rules out most
+        // absent terms without reading the lexicon
+        BloomFilter bloom = blooms.get(shards.fileOf(stem));
+        if (bloom == null || !bloom.mightContain(stem)) { return null; }
+
+        // lo and hi bound the offsets where the stem's line could start. Each step
+        // reads the first line starting at or after the middle of the range
+        long lo = 0, hi = lex.length();
+        while(lo < hi) {
+            long mid = (lo+hi) >>> 1;
+            String line = lineFrom(mid);
+            if (line == null || span[0] >= hi) { hi = mid; continue; }
+
+            String[] parts = line.split(" ");
+            int c = parts[0].compareTo(stem);
+            if (c == 0)
+                return new Entry(parts[0], parts[1], Long.parseLong(parts[2]),
+                    Integer.parseInt(parts[3]));
+            else if (c < 0)
+                lo = span[1];
+            else
+                hi = mid;
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads the first line of the lexicon that starts at or after an offset, noting
+     * where it starts and ends in span
+     * @param from The offset to search from
+     * @return The line, or null if no line starts at or after the offset
+     */
+    private String lineFrom(long from) throws IOException {
+        // at is where the window read starts; reading from the byte before 'from'
+        // finds a line that starts exactly at 'from'
+        long at = (from == 0 ? 0 : from-1);
+
+        for(int window=READ; ; window*=2) {
+            // buf is the window of the file, of which n bytes were read
+            int n = (int)Math.min(window, lex.length()-at), start = 0, end;
+            byte[] buf = new byte[n];
+            if (n <= 0) { return null; }
+            lex.seek(at);
+            lex.readFully(buf);
+
+            if (from > 0) {
+                while(start < n && buf[start] != '\n') { start++; }
+                start++;
+            }
+
+            for(end=start; end < n && buf[end] != '\n'; end++);
+            if (end < n || at+n == lex.length()) {
+                if (start >= n) { return null; }
+                span[0] = at+start;
+                span[1] = at+end+1;
+                return new String(buf, start, end-start, StandardCharsets.US_ASCII);
+            }
+        }
+    }
+
+    /** Closes the lexicon file */
+    public void close() throws IOException {
+        if (lex != null) { lex.close(); }
+    }
+}
+
+/******************************************************************************/
+
+/*
+ * BloomFilter is a set of strings that may report a string it doesn't hold as
+ * present, but never the reverse. Each string sets HASHES bits of a bit array
+ * sized at BITS_PER_KEY bits for each string expected, picked by double hashing,
+ * which gives roughly a 1% false-positive rate.
+ */
+
+class BloomFilter {
+    // BITS_PER_KEY is the number of bits allotted for each string added
+    // HASHES is the number of bits each string sets
+    private static final int BITS_PER_KEY = 10, HASHES = 7;
+
+    // bits is the bit array, and nBits its length in bits
+    private long[] bits;
+    private int nBits;
+
+    /**
+     * Instantiates an empty filter
+     * @param keys The number of strings expected to be added
+     */
+    public BloomFilter(int keys) {
+        nBits = Math.max(64, keys*BITS_PER_KEY);
+        bits = new long[(nBits+63)/64];
+    }
+
+    private BloomFilter(long[] bits, int nBits) {
+        this.bits = bits;
+        this.nBits = nBits;
+    }
+
+    /**
+     * Adds a string to the filter
+     * @param s The string to add
+     */
+    public void add(String s) {
+        int h1 = s.hashCode(), h2 = mix(h1);
+        for(int i=0; i<HASHES; i++) {
+            int b = Math.floorMod(h1+i*h2, nBits);
+            bits[b >>> 6] |= 1L << b;
+        }
+    }
+
+    /**
+     * Tests whether a string might have been added to the filter
+     * @param s The string to test
+     * @return False if the string was certainly never added, or true if it may have been
+     */
+    public boolean mightContain(String s) {
+        int h1 = s.hashCode(), h2 = mix(h1);
+        for(int i=0; i<HASHES; i++) {
+            int b = Math.floorMod(h1+i*h2, nBits);
+            if ((bits[b >>> 6] & (1L << b)) == 0) { return false; }
+        }
+        return true;
+    }
+
+    /** Writes the filter to a stream */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(nBits);
+        for(long w : bits) { out.writeLong(w); }
+    }
+
+    /** Reads a filter written by write */
+    public static BloomFilter read(DataInputStream in) throws IOException {
+        int nBits = in.readInt();
+        long[] bits = new long[(nBits+63)/64];
+        for(int i=0; i<bits.length; i++) { bits[i] = in.readLong(); }
+        return new BloomFilter(bits, nBits);
+    }
+
+    /** Derives a second, independent hash from a string's hash code (always odd) */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
@@ -11,11 +11,13 @@
 // Import statements
 import java.io.File;
 import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
-import java.util.Collections;
 
 public class Query {
     // PATH_FILE is the index of the indexFile array that contains only the filename
@@ -24,19 +26,35 @@ public class Query {
     // SEEK_WORD_PRINT is the number of words a single seek will print, inclusive of the word at
     // the position being seeked itself
     // QUERY_RESULT_LINECOUNT is the number of results to be printed on a single line for a query
+    // CACHE_TOKENS and CACHE_PHRASES are the memory budgets, in bytes, of the caches of decoded
+    // tokens and of phrase intersections
     private static final byte PATH_FILE = 0, PATH_FULL = 1,
         QUERY_HISTORY_SIZE = 10, SEEK_WORD_PRINT = 8, QUERY_RESULT_LINECOUNT = 10;
+    private static final long CACHE_TOKENS = 64L << 20, CACHE_PHRASES = 16L << 20;
 
     // fileIndex is an array of 2-entry arrays that stores file and path names for corpus entries
     // filQuery is the path of the file through which queries will automatically be read
     // queryHistory is an arraylist that contains the history of queries made by the user
     // prevQueryResult stores a token reference to the results of the most recent query
     // QUERY_REDIRECT is a boolean toggle for redirecting query input to a text file
+    // lexicon is the lexicon of the index, or null if the index was saved without one, and
+    // biwords the lexicon of the index's biwords, or null if it was saved without them
+    // shards is the map of the token files of the index
+    // seekPos and seekOff are the seek checkpoints of each corpus entry - word positions at the
+    // starts of lines and the byte offsets of those lines - or null if the index has none
+    // tokens caches the tokens read from the index, keyed by stem, and phrases caches the
+    // intersections of phrase queries (each step of a term and the next, and each whole chain),
+    // keyed by the stems and proximities they chain together
     private static String[][] fileIndex;
     public static String filQuery = null;
     private static ArrayList<String> queryHistory = new ArrayList<>(QUERY_HISTORY_SIZE);
     private static Token prevQueryResult = null;
     public static boolean QUERY_REDIRECT = false;
+    private static Lexicon lexicon = null, biwords = null;
+    private static ShardMap shards = null;
+    private static int[][] seekPos = null, seekOff = null;
+    private static LRUCache<String,Token> tokens = new LRUCache<>("Tokens", CACHE_TOKENS);
+    private static LRUCache<String,Token> phrases = new LRUCache<>("Intersections", CACHE_PHRASES);
 
     /**
      * Allows processing of phrase queries based on a positional index that should be
@@ -80,6 +98,8 @@ public class Query {
                     cmdHelp();
                 else if (input.contains("~seek"))
                     cmdSeek(input);
+                else if (input.equals("~stats"))
+                    cmdStats();
                 else if (input.equals("~exit")) {
                     in.close();
                     return;
@@ -106,13 +126,22 @@ public class Query {
         System.out.println();
         System.out.println("Query Help Information:");
         System.out.println("  ~seek <doc> <pos> : Prints a few words from the document 'doc,' starting from pos");
+        System.out.println("  ~stats            : Shows the contents and hit rates of the query caches");
         System.out.println("  ~exit             : Ends query processing and stops the program");
         System.out.println("  <term>         : Checks if the specified term exists in the corpus");
         System.out.println("  <t1> /<s> <t2> : Checks if t1 and t2 are within 's' words of each other");
         System.out.println("    's' will be inferred to be 1 if it isn't included in the query");
+        System.out.println("    More terms may follow, each within its own 's' of the term before it");
         System.out.println();
     }
 
+    /** Displays the contents and hit rates of the caches of tokens and phrase intersections */
+    private void cmdStats() {
+        System.out.println("Query Cache Statistics:");
+        tokens.printStats();
+        phrases.printStats();
+    }
+
     /**
      * Processes a seek command specified by the user
      * @param input The query that contains the keyword for the seek command
@@ -134,9 +163,20 @@ public class Query {
                 for(int i=0; i<fileIndex.length && index==-1; i++)
                     if (fileIndex[i][PATH_FILE].equals(param[1])) { index = i; }
 
-                // Open a BufferedReader, fetch the excerpt requested, then close the reader
-                BufferedReader file = new BufferedReader(new FileReader(fileIndex[index][PATH_FULL]));
-                seekPrint(file, Integer.parseInt(param[2]));
+                // pos is the position sought, and from the checkpoint (the start of a line)
+                // nearest before it, or the start of the document if there are none
+                int pos = Integer.parseInt(param[2]), from = 0;
+                if (seekPos != null) {
+                    from = Arrays.binarySearch(seekPos[index], pos);
+                    if (from < 0) { from = Math.max(-from-2, 0); }
+                }
+                boolean at = (seekPos != null && from < seekPos[index].length);
+
+                // Open a stream at the checkpoint, fetch the excerpt requested, then close it
+                FileInputStream in = new FileInputStream(fileIndex[index][PATH_FULL]);
+                if (at) { in.getChannel().position(seekOff[index][from]); }
+                BufferedReader file = new BufferedReader(new InputStreamReader(in));
+                seekPrint(file, pos, at ? seekPos[index][from] : 1);
                 file.close();
             }
             catch (Exception e) { valid = false; }
@@ -148,15 +188,16 @@ public class Query {
     /**
      * Reads in words to generate an excerpt requested by the user, starting at the position given and spanning
      * the number of words predefined by the constant SEEK_WORD_PRINT above
-     * @param f A reader that points to the file to read the excerpt from
+     * @param f A reader that points to the start of a line in the file to read the excerpt from
      * @param pos The position where the excerpt should start
+     * @param start The position of the first word of the line the reader points to
      */
-    private void seekPrint(BufferedReader f, int pos) {
+    private void seekPrint(BufferedReader f, int pos, int start) {
         // line is used to read in information from the reader provided
         // result is the line to be printed AFTER execution
         // cPos is the current position being looked at
         String line, result="";
-        int cPos = 1;
+        int cPos = start;
 
         try {
             // While there are still lines available in the file and the position
@@ -198,11 +239,13 @@ public class Query {
          * - Terms must start with a letter or number
          * - Proximity must be specified between two terms (not before or after)
          * - Proximity must be specified as '/#', where # is any integer
+         * - Any number of terms may be chained, each with its own proximity
          * 
          * Valid examples:        Invalid examples:
          * - 'term'               - 'apple orange /3'
          * - 'apple /3 orange'    - '/3 apple orange'
-         *                        - '_term' or '/'
+         * - 'a /3 b c /2 d'      - '_term' or '/' or '/x'
+         *                        - 'apple /3 /4 orange'
          */
 
         // terms is an array containing ALL of the terms for the query
@@ -215,7 +258,8 @@ public class Query {
         // For every detected term in the query, check validity
         for(int i=0; i<terms.length; i++) {
             if (terms[i].contains("/")) {
-                if (terms[i].length()==1 || i==0 || i==terms.length-1) { return false; }
+                if (!terms[i].matches("/[0-9]+") || i==0 || i==terms.length-1 ||
+                    terms[i-1].contains("/")) { return false; }
             }
             else if (terms[i].length()==0 || !Corpus.isLetorNum(terms[i].charAt(0))) { return false; }
         }
@@ -223,12 +267,12 @@ public class Query {
         // The terms detected in the query are valid. Process the existence of a token if it was the only
         // term passed, or check the intersection of two tokens' positional indexes if more was passed
         if (terms.length == 1 && (result = queryToken(terms[0])) != null) {
-            for(int doc : result.getIndex().keySet())
+            for(int doc : result.getDocIDs())
                 System.out.printf("  '%s' has %d match(es)\n", fileIndex[doc][PATH_FILE], result.getDoc(doc).getFreq());
         }
         else if (terms.length > 1 && (result = queryPhrase(terms)) != null) {
             // For every document in the result Token object containing the intersection, print positions
-            for(int doc : result.getIndex().keySet()) {
+            for(int doc : result.getDocIDs()) {
                 lnCnt = 0;
                 System.out.printf("  Document '%s':\n", fileIndex[doc][PATH_FILE]);
 
@@ -249,85 +293,236 @@ public class Query {
     }
 
     /**
-     * Processes a phrase query (two terms or more, in sequence)
+     * Processes a phrase query (two terms or more, in sequence). Each term must be within the
+     * proximity given before it (1 if none is given) of the term before it, so 'a /3 b c' finds
+     * every 'a' within 3 words of a 'b' that's next to a 'c.' The query is split into steps, one
+     * for each term and the next: the positions of the term within the proximity of the next. A
+     * step between two different terms next to each other (a proximity of 1) is the biword of the
+     * two terms, if it's indexed, and any other step is taken from the cache if an earlier query
+     * had it, so neither of its terms has to be loaded. The documents all the steps occur in are
+     * found first, narrowing them by the tokens the steps left need rarest first, and the steps
+     * left are intersected in full and cached, so that any later query with the same step (such as
+     * a refinement of this one) reuses it. The chain is then intersected from the last step back
+     * to the first, only within the documents every step occurs in, and the result of the whole
+     * chain is cached as well
      * @param terms An array of terms to be used during query processing
-     * @return The token found by processing the phrase query, or null if no result
+     * @return The token found by processing the phrase query (holding the positions of the first
+     *   term of every match), or null if no result
      */
     private static Token queryPhrase(String[] terms) {
-        Token t1, t2, res;
-        t1 = queryToken(terms[0]);
-        t2 = queryToken((terms.length==2 ? terms[1] : terms[2]));
+        // words are the terms of the phrase, and prox the proximity allowed between each term
+        // and the next. toks are the tokens of the words, and docs the documents they all occur in
+        // order is the index of each word, rarest first
+        // key is the cache key of the whole chain, and keys those of each word and the next
+        // steps are the positions of each word within its proximity of the next
+        ArrayList<String> words = new ArrayList<>();
+        IntList prox = new IntList();
+        for(String term : terms) {
+            if (term.startsWith("/")) { prox.set(prox.size()-1, Integer.parseInt(term.substring(1))); }
+            else { words.add(term); prox.add(1); }
+        }
+
+        Token[] toks = new Token[words.size()];
+        int[] docs = null, df = new int[words.size()];
+        Integer[] order = new Integer[words.size()];
+        String[] keys = new String[words.size()-1];
+        Token[] steps = new Token[words.size()-1];
+        String key = Token.stemToken(words.get(words.size()-1));
+
+        for(int i=keys.length-1; i>=0; i--) {
+            keys[i] = Token.stemToken(words.get(i))+" /"+prox.get(i)+" "+Token.stemToken(words.get(i+1));
+            key = Token.stemToken(words.get(i))+" /"+prox.get(i)+" "+key;
+        }
+
+        // A repeated query is answered from the cache outright
+        Token res = phrases.get(key);
+        if (res != null) { return (res.getFreq()==0 ? null : res); }
+
+        for(int i=0; i<order.length; i++) {
+            order[i] = i;
+            if ((df[i] = queryFrequency(words.get(i))) == 0) { return null; }
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(df[a], df[b]));
+
+        // Take the steps that can be from a biword, or from the cache (a query of a single step
+        // was just looked up as the whole chain). Every match is in the documents of each of
+        // them, so they narrow the documents as well
+        for(int i=0; i<steps.length; i++) {
+            if (prox.get(i) == 1) { steps[i] = queryBiword(words.get(i), words.get(i+1)); }
+            if (steps[i] == null && steps.length > 1) { steps[i] = phrases.get(keys[i]); }
+            if (steps[i] == null) { continue; }
+            docs = (docs == null ? steps[i].getDocIDs() : intersect(docs, steps[i].getDocIDs()));
+            if (docs.length == 0) { return null; }
+        }
+
+        // Load the tokens of the steps left rarest first, narrowing the documents as each is
+        // loaded, and stop as soon as there are no documents left
+        for(int i : order) {
+            if ((i == steps.length || steps[i] != null) && (i == 0 || steps[i-1] != null)) { continue; }
+            if ((toks[i] = queryToken(words.get(i))) == null) { return null; }
+            docs = (docs == null ? toks[i].getDocIDs() : intersect(docs, toks[i].getDocIDs()));
+            if (docs.length == 0) { return null; }
+        }
+
+        // Intersect the steps left in full, rather than within the documents, so that the cached
+        // step holds for any query it's part of
+        for(int i=0; i<steps.length; i++) {
+            if (steps[i] != null) { continue; }
+            steps[i] = positionalIntersect(toks[i], toks[i+1], prox.get(i), toks[i].getDocIDs());
+            phrases.put(keys[i], steps[i], steps[i].estimateBytes());
+            if ((docs = intersect(docs, steps[i].getDocIDs())).length == 0) { return null; }
+        }
+
+        // Work back from the last step. The positions of a word within its proximity of those
+        // the rest of the chain follows from are all within its proximity of the next word, so
+        // each step only has to be checked against the step after it
+        res = steps[steps.length-1];
+        for(int i=steps.length-2; i>=0 && res.getFreq()>0; i--)
+            res = positionalIntersect(steps[i], res, prox.get(i), docs);
+
+        if (steps.length > 1) { phrases.put(key, res, res.estimateBytes()); }
+        return (res.getFreq()==0 ? null : res);
+    }
 
-        // Return there were no results if either token inquiry resulted in nothing
-        if (t1 == null || t2 == null) { return null; }
+    /**
+     * Looks up the biword of two terms in the index, reading it from the cache if it's been read
+     * recently
+     * @param a The first term
+     * @param b The second term
+     * @return The biword (the positions of the first term with the second on either side of them),
+     *   or null if the terms have the same stem, or the index has no biword of them
+     */
+    private static Token queryBiword(String a, String b) {
+        // key is the biword's key, and cached is the biword, if it's been read recently
+        String stemA = Token.stemToken(a), stemB = Token.stemToken(b), key = stemA+Corpus.BIWORD_SEP+stemB;
+        if (biwords == null || stemA.equals(stemB)) { return null; }
+        Token cached = tokens.get(key);
+        if (cached != null) { return cached; }
+
+        try {
+            // entry is the biword's line in the biword lexicon
+            // in is a stream of the biword file, positioned at the biword
+            Lexicon.Entry entry = biwords.find(key);
+            if (entry == null) { return null; }
+
+            FileInputStream in = new FileInputStream(Corpus.DIR_INDEX+entry.file);
+            in.getChannel().position(entry.offset);
+            BufferedReader file = new BufferedReader(new InputStreamReader(in));
+
+            // Skip the biword's own line, and read its postings
+            file.readLine();
+            Token token = indexLoadToken(key, file);
+            file.close();
+            tokens.put(key, token, token.estimateBytes());
+            return token;
+        }
+        catch(IOException | RuntimeException e) {
+            System.err.println("SYS: Error occurred during query > biword lookup!");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
 
-        res = positionalIntersect(t1, t2, (terms.length==2 ? 1 : Integer.parseInt(terms[1].substring(1))));
-        return res;
+        return null;
     }
 
     /**
-     * Generates an intersection between two tokens' positional listings, factoring in
-     * the proximity desired. The intersection is stored in a generic Token object
+     * Intersects two tokens' positional listings, factoring in the proximity desired. The
+     * intersection is stored in a generic Token object
      * @param tokA The first token to perform intersection with
      * @param tokB The second token to perform intersection with
      * @param proximity The number of words, maximum, allowed between tokA and tokB
-     * @return A Token object that includes the intersected positional listing as its index
-     *   or null if the intersection between the tokens has no result
+     * @param docs The documents to intersect within, in ascending order (each in tokA's listing)
+     * @return A Token object holding the positions of tokA that are within the proximity of tokB
+     *   (which has no documents if there are none)
      */
-    private static Token positionalIntersect(Token tokA, Token tokB, int proximity) {
-        // result is where the final intersection list will be stored
-        // docs[] is a list of documents that are contained in the tokens' positional indexes
+    private static Token positionalIntersect(Token tokA, Token tokB, int proximity, int[] docs) {
         Token result = new Token("Intersector");
-        ArrayList<ArrayList<Integer>> docs = new ArrayList<>(2);
-        docs.add(Collections.list(tokA.getIndex().keys()));
-        docs.add(Collections.list(tokB.getIndex().keys()));
-
-        // Sort both document lists in ascending order
-        Collections.sort(docs.get(0));
-        Collections.sort(docs.get(1));
-
-        // While both of the document ID lists is NOT empty
-        while(!docs.get(0).isEmpty() && !docs.get(1).isEmpty()) {
-            // d is temporary storage for the first ID in both lists
-            int d[] = { docs.get(0).get(0), docs.get(1).get(0) };
-
-            if (d[0] == d[1]) {
-                // post is the list of locations in the document that the tokens occur
-                ArrayList<ArrayList<Integer>> post = new ArrayList<>(2);
-                post.add(tokA.getDoc(d[0]).getLocations());
-                post.add(tokB.getDoc(d[0]).getLocations());
-
-                // Remove the ID from both document ID lists and add the ID to the intersection
-                result.addDoc(d[0]);
-                docs.get(0).remove(0);
-                docs.get(1).remove(0);
-
-                // Intersect the position listings for both tokens by adding positions from tokA that are
-                // within the proximity of tokB to the result list, checking if the position exists in
-                // the intersection already to prevent duplicates
-                for(int i=0; i<post.get(0).size(); i++)
-                    for (int k=0; k<post.get(1).size(); k++) {
-                        if (Math.abs(post.get(0).get(i) - post.get(1).get(k)) <= proximity) {
-                            if (!result.isInDocatLoc(d[0], post.get(0).get(i))) // Disallows duplicates
-                                result.addDocLocation(d[0], post.get(0).get(i));
-                        }
-                        else if (post.get(1).get(k) > post.get(0).get(i))
-                            break;
-                    }
 
-                // Remove the document if there is no intersection
-                if (result.getDoc(d[0]).getLocations().isEmpty()) { result.remDoc(d[0]); }
-            }
-            else if (d[0] < d[1])
-                docs.get(0).remove(0);
-            else
-                docs.get(1).remove(0);
+        for(int doc : intersect(docs, tokB.getDocIDs())) {
+            int[] pos = positionalIntersect(positions(tokA, doc), positions(tokB, doc), proximity);
+            if (pos.length == 0) { continue; }
+
+            result.addDoc(doc);
+            for(int p : pos) { result.addDocLocation(doc, p); }
+        }
+
+        result.freeze();
+        return result;
+    }
+
+    /**
+     * Intersects two tokens' positional listings in a document, factoring in the proximity desired.
+     * Both listings are walked once: as the positions of A rise, the window of positions of B within
+     * the proximity slides forward with them
+     * @param posA The positions of the first token, in ascending order
+     * @param posB The positions of the second token, in ascending order
+     * @param proximity The number of words, maximum, allowed between the tokens
+     * @return The positions of A that have a position of B within the proximity, in ascending order
+     */
+    private static int[] positionalIntersect(int[] posA, int[] posB, int proximity) {
+        // res holds the positions kept, and n is how many there are
+        // k is the first position of B that isn't too far before the current position of A
+        int[] res = new int[posA.length];
+        int n = 0, k = 0;
+
+        for(int a : posA) {
+            while(k < posB.length && posB[k] < a-proximity) { k++; }
+            if (k == posB.length) { break; }
+            if (posB[k] <= a+proximity) { res[n++] = a; }
+        }
+
+        return Arrays.copyOf(res, n);
+    }
+
+    /**
+     * Intersects two lists of document IDs
+     * @param a The first list, in ascending order
+     * @param b The second list, in ascending order
+     * @return The IDs in both lists, in ascending order
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        // res holds the IDs in both lists, and n is how many there are
+        // i and k are the positions of the next IDs to compare in each list
+        int[] res = new int[Math.min(a.length, b.length)];
+        int n = 0, i = 0, k = 0;
+
+        while(i < a.length && k < b.length) {
+            if (a[i] == b[k]) { res[n++] = a[i]; i++; k++; }
+            else if (a[i] < b[k]) { i++; }
+            else { k++; }
+        }
+
+        return Arrays.copyOf(res, n);
+    }
+
+    /**
+     * Returns the positions of a token in a document
+     * @param t The token
+     * @param doc The numerical ID of the document
+     * @return The positions, in ascending order
+     */
+    private static int[] positions(Token t, int doc) { return t.getDoc(doc).getLocations(); }
+
+    /**
+     * Returns the number of documents a term occurs in, according to the lexicon
+     * @param t The term
+     * @return The document frequency of the term, 0 if it's not in the index, or the largest int
+     *   if the index has no lexicon to tell
+     */
+    private static int queryFrequency(String t) {
+        if (lexicon == null) { return Integer.MAX_VALUE; }
+
+        try {
+            Lexicon.Entry entry = lexicon.find(Token.stemToken(t));
+            return (entry == null ? 0 : entry.df);
+        }
+        catch(IOException e) {
+            System.err.println("SYS: Error occurred during query > lexicon lookup!");
+            System.err.println(e.getMessage());
+            System.exit(1);
         }
 
-        // The result returned should be null if no intersections were found (in other words, if the
-        // frequency of the generic token made for the intersection has no frequency - 0), or just the
-        // token itself if there is at least 1 occurence in the intersection
-        return (result.getFreq()==0 ? null : result);
+        return 0;
     }
 
     /**
@@ -338,10 +533,40 @@ public class Query {
      */
     private static Token queryToken(String t) {
         // path is a reference to the file where the token should be stored
-        File path = new File(Corpus.DIR_INDEX+t.charAt(0)+Corpus.EXT_TOKEN);
+        // cached is the token, if it's been read recently
+        File path = new File(Corpus.DIR_INDEX+shards.fileOf(Token.stemToken(t)));
+        Token cached = tokens.get(Token.stemToken(t));
+        if (cached != null) { return cached; }
+
+        // With a lexicon, the token's postings are found by a lookup, and read by seeking
+        // straight to them
+        if (lexicon != null) {
+            try {
+                // entry is the token's line in the lexicon
+                // in is a stream of the token file, positioned at the token
+                Lexicon.Entry entry = lexicon.find(Token.stemToken(t));
+                if (entry == null) { return null; }
+
+                FileInputStream in = new FileInputStream(Corpus.DIR_INDEX+entry.file);
+                in.getChannel().position(entry.offset);
+                BufferedReader file = new BufferedReader(new InputStreamReader(in));
+
+                // Skip the token's own line, and read its postings
+                file.readLine();
+                Token token = indexLoadToken(t, file);
+                file.close();
+                tokens.put(entry.stem, token, token.estimateBytes());
+                return token;
+            }
+            catch(IOException | RuntimeException e) {
+                System.err.println("SYS: Error occurred during query > lexicon lookup!");
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
 
-        // Only attempt to load token information if the file it should exist in
-        // exists for reading!
+        // Without one, scan the token file. Only attempt to load token information if the file
+        // it should exist in exists for reading!
         if (path.exists()) {
             try {
                 // file is a reference to a reader for getting data on the token
@@ -358,6 +583,7 @@ public class Query {
                         Token token = indexLoadToken(t, file);
 
                         file.close();
+                        tokens.put(stem, token, token.estimateBytes());
                         return token;
                     }
 
@@ -400,7 +626,8 @@ public class Query {
                         t.addDocLocation(doc, Integer.parseInt(w));
             }
             
-            // Return the token created
+            // Return the token created, its listings packed as it's complete
+            t.freeze();
             return t;
         }
         catch(IOException e) {
@@ -415,7 +642,7 @@ public class Query {
 
     /**
      * Reads in the list of corpus entries from the main index directory, storing the paths to each
-     * entry's file in fileIndex
+     * entry's file in fileIndex, along with their seek checkpoints, and opens the lexicons of the index
      */
     private static void loadFileIndex() {
         // Try to read in all of the file paths of the corpus entries and
@@ -432,6 +659,30 @@ public class Query {
             }
             
             docs.close();
+
+            // Read in the seek checkpoints of each entry, if the index has them
+            if ((new File(Corpus.FIL_SEEK)).exists()) {
+                BufferedReader seek = new BufferedReader(new FileReader(Corpus.FIL_SEEK));
+                seekPos = new int[fileIndex.length][];
+                seekOff = new int[fileIndex.length][];
+
+                for(int i=0; i<fileIndex.length; i++) {
+                    String[] parts = seek.readLine().split(" ");
+                    seekPos[i] = new int[Integer.parseInt(parts[0])];
+                    seekOff[i] = new int[seekPos[i].length];
+                    for(int k=0; k<seekPos[i].length; k++) {
+                        seekPos[i][k] = Integer.parseInt(parts[1+2*k]);
+                        seekOff[i][k] = Integer.parseInt(parts[2+2*k]);
+                    }
+                }
+
+                seek.close();
+            }
+
+            // Load the map of the token files, and open the lexicon, if the index has one
+            shards = ShardMap.load();
+            lexicon = Lexicon.open(Lexicon.LEX_TOKENS, shards);
+            biwords = Lexicon.open(Corpus.LEX_BIWORDS, ShardMap.single(Corpus.FIL_BIWORDS));
         }
         catch(IOException e) {
             System.err.println("SYS: Error on file index load!");
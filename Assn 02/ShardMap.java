@@ -0,0 +1,145 @@
+/*
+ * Assignment 02
+ * File:    ShardMap.java
+ * Date:    19 October 2026
+ * Author:  Matthew Morgan
+ * Description:
+ * ShardMap splits the sorted tokens of the index into shards - token files of
+ * about the same size - and records which file each token is in. Shards are
+ * ranges of the sorted tokens, so every file stays sorted and the lexicon can
+ * still be written in order, and they're cut by an estimate of how much each
+ * token's postings take up rather than by first letter, so that no file holds
+ * most of the index. The map is saved in the index directory as a manifest:
+ *   <number of shards>
+ *   <first token of the shard> <token file>
+ *   ...
+ * Indexes saved without a manifest keep a token file for each first letter,
+ * and a map loaded for them finds tokens that way.
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+class ShardMap {
+    // FIL_SHARDS is the location of the manifest of the shards
+    // SHARDS is the number of shards the tokens are split into (fewer if there are fewer tokens)
+    public static final String FIL_SHARDS = Corpus.DIR_INDEX + "shards.ind";
+    public static final int SHARDS = 16;
+
+    // first is the first token of each shard, and files the token file of each, or both are
+    // null if tokens are filed by first letter
+    // bounds are the indices, in the sorted tokens, where each shard starts, followed by the
+    // number of tokens (only when the map is made for writing)
+    private String[] first = null, files = null;
+    private int[] bounds = null;
+
+    private ShardMap() {}
+
+    /**
+     * Splits sorted tokens into shards of about the same size
+     * @param tokens The tokens, in sorted order
+     * @param weight The estimated size of each token's postings
+     * @return The map of the shards
+     */
+    public static ShardMap partition(ArrayList<String> tokens, long[] weight) {
+        // total is the size of all the tokens, and sum the size of those before the current one
+        // n is the number of shards started so far
+        ShardMap res = new ShardMap();
+        int shards = Math.min(SHARDS, tokens.size());
+        long total = 0, sum = 0;
+        int n = 0;
+        for(long w : weight) { total += w; }
+
+        res.bounds = new int[shards+1];
+        res.first = new String[shards];
+        res.files = new String[shards];
+
+        // Start a new shard at a token once the tokens before it fill the shards before it, or
+        // once there are only tokens enough left for one in each of the shards after it
+        for(int i=0; i<tokens.size() && n<shards; i++) {
+            if (sum >= total/shards*n || tokens.size()-i == shards-n) {
+                res.bounds[n] = i;
+                res.first[n] = tokens.get(i);
+                res.files[n] = String.format("shard%02d%s", n, Corpus.EXT_TOKEN);
+                n++;
+            }
+            sum += weight[i];
+        }
+
+        res.bounds[shards] = tokens.size();
+        return res;
+    }
+
+    /**
+     * Makes the map of a single token file, which holds every token
+     * @param file The name of the token file, within the index directory
+     * @return The map
+     */
+    public static ShardMap single(String file) {
+        ShardMap res = new ShardMap();
+        res.first = new String[]{ "" };
+        res.files = new String[]{ file };
+        return res;
+    }
+
+    /**
+     * Loads the map of the index's shards
+     * @return The map, which files tokens by first letter if the index has no manifest
+     */
+    public static ShardMap load() throws IOException {
+        ShardMap res = new ShardMap();
+        if (!(new File(FIL_SHARDS)).exists()) { return res; }
+
+        BufferedReader file = new BufferedReader(new FileReader(FIL_SHARDS));
+        int n = Integer.parseInt(file.readLine());
+        res.first = new String[n];
+        res.files = new String[n];
+        for(int i=0; i<n; i++) {
+            String[] parts = file.readLine().split(" ");
+            res.first[i] = parts[0];
+            res.files[i] = parts[1];
+        }
+        file.close();
+
+        return res;
+    }
+
+    /** Saves the manifest of the shards */
+    public void save() throws IOException {
+        BufferedWriter file = new BufferedWriter(new FileWriter(FIL_SHARDS));
+        file.write(first.length+"\n");
+        for(int i=0; i<first.length; i++)
+            file.write(first[i]+" "+files[i]+"\n");
+        file.close();
+    }
+
+    // Accessors (from and to are only available when the map is made for writing)
+    public int size() { return files.length; }
+    public String file(int shard) { return files[shard]; }
+    public int from(int shard) { return bounds[shard]; }
+    public int to(int shard) { return bounds[shard+1]; }
+
+    /**
+     * Finds the token file a stemmed token is in, if it's in the index
+     * @param stem The stemmed token
+     * @return The name of the token file, within the index directory, or null if the index is empty
+     */
+    public String fileOf(String stem) {
+        if (first == null) { return stem.charAt(0)+Corpus.EXT_TOKEN; }
+        if (first.length == 0) { return null; }
+
+        // lo and hi bound the last shard whose first token is at or before the stem
+        int lo = 0, hi = first.length-1;
+        while(lo < hi) {
+            int mid = (lo+hi+1) >>> 1;
+            if (first[mid].compareTo(stem) <= 0) { lo = mid; } else { hi = mid-1; }
+        }
+        return files[lo];
+    }
+}
@@ -12,8 +12,7 @@
  */
 
  // Import statements
-import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Arrays;
 
 /*
  * Token represents a single, stemmed word to be put into a TokenDictionary.
@@ -22,25 +21,39 @@ import java.util.Hashtable;
  */
 
 class Token {
-    // A string representing the token itself, a hashtable of TIDocuments to
-    // store the positional listings for documents (hashed by document ID),
+    // A string representing the token itself, a map of TIDocuments to
+    // store the positional listings for documents (keyed by document ID),
     // and the total number of times this word occurs in the corpus
     private String token;
-    private Hashtable<Integer,TokenIndexDocument> index;
+    private IntObjMap<TokenIndexDocument> index;
     private int ttlFreq;
 
+    // A Stemmer for each thread that stems tokens, reused for every word
+    private static final ThreadLocal<Stemmer> STEMMER = ThreadLocal.withInitial(Stemmer::new);
+
     // Constructor
     public Token(String name) {
         token = name;
-        index = new Hashtable<>();
+        index = new IntObjMap<>();
         ttlFreq = 0;
     }
 
     // Accessors
     public String getToken() { return token; }
-    public Hashtable<Integer,TokenIndexDocument> getIndex() { return index; }
+    public IntObjMap<TokenIndexDocument> getIndex() { return index; }
     public int getFreq() { return ttlFreq; }
 
+    /**
+     * Estimates the memory the token's index holds: each document costs its slot in the map,
+     * and the listing of its positions
+     * @return The estimate, in bytes
+     */
+    public long estimateBytes() {
+        long res = 64L + 16L*index.size();
+        for(TokenIndexDocument doc : index.values()) { res += doc.estimateBytes(); }
+        return res;
+    }
+
     /**
      * Gets, and returns, a document with the specified ID in the index
      * @param docID The numerical ID of the document to fetch
@@ -48,6 +61,16 @@ class Token {
      */
     public TokenIndexDocument getDoc(int docID) { return index.get(docID); }
 
+    /**
+     * Returns the IDs of the documents the token occurs in
+     * @return The document IDs, in ascending order
+     */
+    public int[] getDocIDs() {
+        int[] ids = index.keys();
+        Arrays.sort(ids);
+        return ids;
+    }
+
     /**
      * Returns whether or not the token occurs in the document with the given ID
      * @param docID The numerical ID of the document to check the token's occurrence within
@@ -68,7 +91,12 @@ class Token {
 
     // Mutators
     public void setToken(String t) { token = t; }
-    public void clrIndex() { index = new Hashtable<>(); ttlFreq = 0; }
+    public void clrIndex() { index = new IntObjMap<>(); ttlFreq = 0; }
+
+    /** Freezes the positional listing of every document, once the token's index is complete */
+    public void freeze() {
+        for(TokenIndexDocument doc : index.values()) { doc.freeze(); }
+    }
 
     /**
      * Adds a document to the index with the specified ID
@@ -120,10 +148,7 @@ class Token {
      * @return The token, as a string, after stemming
      */
     public static String stemToken(String token) {
-        Stemmer stem = new Stemmer();
-        stem.add(token.toCharArray(), token.length());
-        stem.stem();
-        return stem.toString();
+        return STEMMER.get().stem(token);
     }
 }
 
@@ -133,42 +158,129 @@ class Token {
  * TokenIndexDocument represents a single document in a collection of documents that
  * a token occurs within. It contains the frequency of the token in the document as
  * well as a list of locations of the token in the document.
+ *
+ * Locations are kept, in ascending order, in an array that grows as they're added;
+ * they arrive in order while a document is processed, so each is appended. Once a
+ * listing is complete it may be frozen, which packs it into the gaps between its
+ * locations, each as a variable-length integer of 7 bits per byte (most take one).
  */
 
 class TokenIndexDocument {
     // Frequency of the token in this document, the list of positions of the
-    // token in the document, and the document's ID
+    // token in the document (of which the first docFreq are used), and the
+    // document's ID. packed is the frozen form of the list, or null if the
+    // list isn't frozen (locations is null when it is)
     private int docFreq, docID;
-    private ArrayList<Integer> locations;
+    private int[] locations;
+    private byte[] packed = null;
 
     // Constructor
     public TokenIndexDocument(int id) {
-        locations = new ArrayList<>();
+        locations = new int[4];
         docFreq = 0;
         docID = id;
     }
 
     // Accessors
     public int getFreq() { return docFreq; }
-    public boolean isAtLocation(int ind) { return locations.contains(ind); }
-    public ArrayList<Integer> getLocations() { return locations; }
     public int getID() { return docID; }
+    public boolean isFrozen() { return packed != null; }
+
+    /**
+     * Returns whether the token occurs at a location in the document, by binary search of
+     * the list, or by a pass over the gaps of a frozen list
+     * @param ind The location to check for
+     * @return True if the token occurs at the location, or false if not
+     */
+    public boolean isAtLocation(int ind) {
+        if (packed == null) { return Arrays.binarySearch(locations, 0, docFreq, ind) >= 0; }
+
+        for(int i=0, at=0, loc=0; i<docFreq; i++) {
+            int gap = 0;
+            for(int shift=0; ; shift+=7) {
+                byte b = packed[at++];
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0) { break; }
+            }
+            loc += gap;
+            if (loc >= ind) { return loc == ind; }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the locations of the token in the document
+     * @return A new array of the locations, in ascending order
+     */
+    public int[] getLocations() {
+        if (packed == null) { return Arrays.copyOf(locations, docFreq); }
+
+        int[] res = new int[docFreq];
+        for(int i=0, at=0, loc=0; i<docFreq; i++) {
+            int gap = 0;
+            for(int shift=0; ; shift+=7) {
+                byte b = packed[at++];
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0) { break; }
+            }
+            res[i] = (loc += gap);
+        }
+        return res;
+    }
+
+    /**
+     * Estimates the memory the document's listing holds
+     * @return The estimate, in bytes
+     */
+    public long estimateBytes() {
+        return 32L + (packed == null ? 4L*locations.length : packed.length);
+    }
 
     // Mutators
-    public void clrLocations() { locations = new ArrayList<>(); docFreq = 0; }
-    public void addLocation(int loc) { this.addLocationInOrder(loc); docFreq++; }
+    public void clrLocations() { locations = new int[4]; packed = null; docFreq = 0; }
     public void setID(int newID) { docID = newID; }
 
     /**
-     * Adds a location to the location index for this token in this document
+     * Adds a location to the location index for this token in this document. Locations
+     * past the last are appended, and any others are inserted in order. A frozen list
+     * is unpacked first
      * @param loc The location where the token was found
      */
-    private void addLocationInOrder(int loc) {
-        for(int i=0; i<locations.size(); i++)
-            if (locations.get(i) > loc) {
-                locations.add(i-1, loc);
-                return;
+    public void addLocation(int loc) {
+        if (packed != null) { locations = getLocations(); packed = null; }
+        if (docFreq == locations.length)
+            locations = Arrays.copyOf(locations, Math.max(4, docFreq*2));
+
+        if (docFreq == 0 || locations[docFreq-1] <= loc)
+            locations[docFreq] = loc;
+        else {
+            // at is where the location belongs among those already in the list
+            int at = Arrays.binarySearch(locations, 0, docFreq, loc);
+            if (at < 0) { at = -at-1; }
+            System.arraycopy(locations, at, locations, at+1, docFreq-at);
+            locations[at] = loc;
+        }
+        docFreq++;
+    }
+
+    /** Packs the list into the gaps between its locations, as variable-length integers */
+    public void freeze() {
+        if (packed != null) { return; }
+
+        // buf holds the packed gaps, of which n bytes are used
+        byte[] buf = new byte[docFreq*5];
+        int n = 0;
+        for(int i=0, prev=0; i<docFreq; i++) {
+            int gap = locations[i]-prev;
+            prev = locations[i];
+            while((gap & ~0x7F) != 0) {
+                buf[n++] = (byte)((gap & 0x7F) | 0x80);
+                gap >>>= 7;
             }
-        locations.add(loc);
+            buf[n++] = (byte)gap;
+        }
+
+        packed = Arrays.copyOf(buf, n);
+        locations = null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,268 @@
+/**
+ * File:    Checkpoint.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.1
+ * Description:
+ * Checkpoint is the record of an index build's progress, kept in a file
+ * beside the index (<out-ind>.ckpt) so that a build that dies part-way can
+ * be resumed with -resume instead of started over. The file is a sequence of
+ * frames, each only ever appended:
+ * - a header, identifying the corpus the build is reading as it stood: its
+ *   name, and the size and last modified time of its file (or of each file
+ *   in it, if it's a directory), so a corpus that's changed since isn't
+ *   resumed from
+ * - blocks of entries: the tokenized entries merged into the index since the
+ *   block before (see Ingest.java), whose documents are committed once the
+ *   block is on disk
+ * - a mark that the index was saved, with the sizes of the index and its
+ *   positions file, after which only the vsm is left to build
+ *
+ * Each frame holds its kind, its length, and a CRC-32 of its data, and is
+ * forced to disk before the build moves on. A frame that's cut short or
+ * doesn't match its CRC (the build died while writing it) ends the valid
+ * part of the file, which is cut there when the build resumes, so a resumed
+ * build continues from the last frame that was written whole. The file is
+ * deleted once the build has saved the vsm.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ * Version 1.1 (19 October 2026)
+ * - The header identifies the corpus by the size and last modified time of
+ *   its files as well as its name, so a build isn't resumed from a checkpoint
+ *   of the corpus as it was before it changed
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+class Checkpoint {
+  // HEADER, ENTRIES, and INDEX are the kinds of frame
+  // FRAME is the bytes before each frame's data: its kind, the length of
+  //   its data, and their CRC-32
+  private static final int HEADER = 0, ENTRIES = 1, INDEX = 2, FRAME = 16;
+
+  // loc is the location of the checkpoint file, and ch the file
+  // blocks are the offset and length of the data of each valid block of
+  //   entries
+  // index are the sizes of the index and positions file when the index was
+  //   saved, or null if it hasn't been
+  private String loc;
+  private FileChannel ch;
+  private ArrayList<long[]> blocks = new ArrayList<>();
+  private long[] index = null;
+
+  private Checkpoint(String loc) { this.loc = loc; }
+
+  /**
+   * Opens the checkpoint of a build
+   * @param loc The location of the checkpoint file
+   * @param corpus The corpus the build reads
+   * @param resume Whether to continue from the frames already in the file;
+   *   if not, or if they're of a different corpus (or of the corpus before it
+   *   changed), the file is started over
+   * @return The checkpoint
+   */
+  public static Checkpoint open(String loc, String corpus, boolean resume)
+    throws IOException {
+    Checkpoint res = new Checkpoint(loc);
+    res.ch = FileChannel.open(new File(loc).toPath(), StandardOpenOption.READ,
+      StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+    byte[] name = identify(corpus).getBytes(StandardCharsets.UTF_8);
+    if (resume && !res.scan(name)) {
+      System.out.println("  No checkpoint of '"+corpus+"' as it is now was "+
+        "found in '"+loc+"'; starting over");
+      res.blocks.clear();
+      res.index = null;
+      resume = false;
+    }
+
+    if (!resume) {
+      res.ch.truncate(0);
+      res.append(HEADER, name);
+    }
+
+    return res;
+  }
+
+  /**
+   * Identifies a corpus as it is now, by its name and the size and last
+   * modified time of its file. A directory is identified by those of every
+   * file in it (other than the entry list a build generates in it), so one
+   * that's had a file added, removed, or changed is told apart
+   * @param corpus The corpus
+   * @return The identity, which is the data of the checkpoint's header
+   */
+  private static String identify(String corpus) {
+    File f = new File(corpus);
+    if (!f.isDirectory())
+      return corpus+"\n"+f.length()+" "+f.lastModified();
+
+    // files are the path, size, and time of each file, sorted so the order
+    // the directory lists them in doesn't matter
+    // crc is the checksum of them all, which stands in for the list
+    ArrayList<String> files = new ArrayList<>();
+    listFiles(files, f, "");
+    Collections.sort(files);
+    CRC32 crc = new CRC32();
+    for(String file : files)
+      crc.update((file+"\n").getBytes(StandardCharsets.UTF_8));
+
+    return corpus+"\n"+files.size()+" "+crc.getValue();
+  }
+
+  /**
+   * Lists the path, size, and last modified time of each file in a directory
+   * and those beneath it
+   * @param L The list to add the files to
+   * @param dir The directory
+   * @param path The path of the directory within the corpus
+   */
+  private static void listFiles(ArrayList<String> L, File dir, String path) {
+    File[] files = dir.listFiles();
+    if (files == null) { return; }
+
+    for(File f : files)
+      if (f.isDirectory())
+        listFiles(L, f, path+f.getName()+"/");
+      else if (!(path+f.getName()).equals(Corpus.FILE_ENTRY))
+        L.add(path+f.getName()+" "+f.length()+" "+f.lastModified());
+  }
+
+  /** Returns the number of blocks of entries committed */
+  public int blocks() { return blocks.size(); }
+
+  /**
+   * Reads a block of entries committed by an earlier run
+   * @param i The index of the block
+   * @return The data of the block
+   */
+  public byte[] block(int i) throws IOException {
+    return read(blocks.get(i)[0], (int)blocks.get(i)[1]);
+  }
+
+  /**
+   * Commits a block of entries
+   * @param data The data of the block
+   * @param len The number of bytes of data
+   */
+  public void addBlock(byte[] data, int len) throws IOException {
+    long at = ch.size();
+    append(ENTRIES, data, len);
+    blocks.add(new long[]{at+FRAME, len});
+  }
+
+  /**
+   * Returns whether an earlier run saved the index, and the index and its
+   * positions file are still the size they were saved at
+   * @param idx The location of the index
+   * @param pos The location of its positions file
+   */
+  public boolean indexSaved(String idx, String pos) {
+    return index != null && new File(idx).length() == index[0] &&
+      new File(pos).length() == index[1];
+  }
+
+  /**
+   * Marks that the index was saved, so a resumed run only builds the vsm
+   * @param idx The location of the index
+   * @param pos The location of its positions file
+   */
+  public void markIndexSaved(String idx, String pos) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(16);
+    buf.putLong(new File(idx).length()).putLong(new File(pos).length());
+    append(INDEX, buf.array());
+    index = new long[]{new File(idx).length(), new File(pos).length()};
+  }
+
+  /** Closes and deletes the checkpoint, once the build is done */
+  public void delete() throws IOException {
+    ch.close();
+    new File(loc).delete();
+  }
+
+  /**
+   * Reads the valid frames of the file, and cuts it after the last of them
+   * @param name The identity of the corpus, which the header must hold
+   * @return Whether the file starts with the header of the corpus
+   */
+  private boolean scan(byte[] name) throws IOException {
+    // at is the offset of the next frame, and len the size of the file
+    // head is the frame being read
+    long at = 0, len = ch.size();
+    ByteBuffer head = ByteBuffer.allocate(FRAME);
+    boolean valid = false;
+
+    while(at+FRAME <= len) {
+      head.clear();
+      ch.read(head, at);
+      int kind = head.getInt(0), size = head.getInt(4);
+      if (size < 0 || at+FRAME+size > len) { break; }
+
+      byte[] data = read(at+FRAME, size);
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      if (crc.getValue() != head.getLong(8)) { break; }
+
+      if (kind == HEADER)
+        valid = (at == 0 && Arrays.equals(data, name));
+      else if (kind == ENTRIES)
+        blocks.add(new long[]{at+FRAME, size});
+      else if (kind == INDEX) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        index = new long[]{buf.getLong(), buf.getLong()};
+      }
+      if (!valid) { return false; }
+
+      at += FRAME+size;
+    }
+
+    ch.truncate(at);
+    return valid;
+  }
+
+  /** Appends a frame holding all of an array */
+  private void append(int kind, byte[] data) throws IOException {
+    append(kind, data, data.length);
+  }
+
+  /**
+   * Appends a frame to the file, and forces it to disk
+   * @param kind The kind of frame
+   * @param data The data of the frame
+   * @param len The number of bytes of data
+   */
+  private void append(int kind, byte[] data, int len) throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, len);
+
+    ByteBuffer head = ByteBuffer.allocate(FRAME);
+    head.putInt(kind).putInt(len).putLong(crc.getValue()).flip();
+    ByteBuffer body = ByteBuffer.wrap(data, 0, len);
+
+    long at = ch.size();
+    while(head.hasRemaining()) { at += ch.write(head, at); }
+    while(body.hasRemaining()) { at += ch.write(body, at); }
+    ch.force(false);
+  }
+
+  /** Reads len bytes of the file from offset at */
+  private byte[] read(long at, int len) throws IOException {
+    byte[] res = new byte[len];
+    ByteBuffer buf = ByteBuffer.wrap(res);
+    while(buf.hasRemaining())
+      if (ch.read(buf, at+buf.position()) < 0)
+        throw new IOException("Unexpected end of the checkpoint");
+    return res;
+  }
+}
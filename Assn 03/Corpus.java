@@ -1,6 +1,6 @@
 /*
  * File:    Corpus.java
- * Version: 2.1.1
+ * Version: 2.2
  * Author:  Matthew Morgan
  * Description:
  * Corpus is the primary driver for parsing corpus documents and generating the
@@ -23,6 +23,42 @@
  * Version 2.1.1 (3 April 2018)
  * - Fixed a bug where specifying an input file instead of input directory for
  *   a corpus wouldn't load entries properly
+ * Version 2.2 (18 October 2026)
+ * - Added the -prec[p] and -termscale options for storing vsm weights as
+ *   floats or 8-bit codes, with a top-10 agreement report against double
+ *   precision when a double-precision model is converted
+ * - Added the -scalar option to disable SIMD scoring of documents
+ * - Document titles are kept in a TitleStore, and saved to their own
+ *   memory-mappable file (<out-vsm-head>.ttl) instead of the title vsm
+ * - Token tiers are TokenTables (see the Common directory for the primitive
+ *   collections they're built on) instead of Hashtables
+ * - Token postings are appended to packed Postings lists during indexing, and
+ *   trimmed to size once the corpus has been read
+ * - The tiered index is saved and loaded by streaming each token's record,
+ *   rather than building and splitting a string of the whole record
+ * - Token records are parsed concurrently when the tiered index is loaded,
+ *   as are the vector lines of the vsm; -threads[n] sets the thread count
+ * - Added the -reorder[m] option, which renumbers documents by entry path,
+ *   title, or graph bisection before the index is saved (see DocOrder.java)
+ * - Positions are saved to their own file beside the index (<out-ind>.pos),
+ *   leaving documents and frequencies in the index; a loaded index only
+ *   reads positions from that file when they're needed
+ * - The agreement report ranks its title queries as one batch (see
+ *   Model.topDocuments)
+ * - Corpus entries are read, tokenized, and merged into the index as a
+ *   pipeline (see Ingest.java), largest entries first, with the throughput
+ *   of each stage reported as it runs; processLine was folded into it
+ * - A corpus can be a .zip, .tar, .tar.gz, or .gz file, or standard input
+ *   ('-'), whose entries are streamed without being extracted to disk (see
+ *   CorpusSource.java)
+ * - A corpus can be a single file of many entries, each starting with a
+ *   '.I <id>' line; a file on disk is memory-mapped and split into entries
+ *   on several threads
+ * - Merged corpus entries are checkpointed beside the index (<out-ind>.ckpt)
+ *   as the corpus is read, and the saved index is marked there too; the
+ *   -resume option continues an interrupted build from its checkpoint (see
+ *   Checkpoint.java), unless the corpus has changed since; a corpus read
+ *   from standard input can't be resumed
  * 
  * ~~~ BUCKETLIST ~~~
  * - Allow only a single parameter for execution - <in-corpa> - which will make
@@ -35,29 +71,54 @@
 import java.util.Hashtable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 public class Corpus {
     // FILE_ENTRY is the filename of a corpus entry list when auto-generated
-    private static final String FILE_ENTRY = "corpus.dat";
-
-    // datTitle and datDoc are token dictionaries for index generation
+    // EXT_TITLES is the extension of the title file saved beside a title vsm
+    // EXT_MAP is the extension of the doc-ID mapping saved beside an index
+    // EXT_POS is the extension of the positions file saved beside an index
+    // EXT_CKPT is the extension of the checkpoint kept beside an index while
+    //   it's built
+    // AGREE_QUERIES is the most titles used as queries for agreement reports
+    // AGREE_TOP is the number of top results compared in agreement reports
+    static final String FILE_ENTRY = "corpus.dat";
+    private static final String EXT_TITLES = ".ttl", EXT_MAP = ".map",
+        EXT_POS = ".pos", EXT_CKPT = ".ckpt";
+    private static final int AGREE_QUERIES = 200, AGREE_TOP = 10;
+
+    // datTitle and datDoc are token tables for index generation
     // vsmTitle and vsmDoc are vector space models for titles and doc content
-    // docTitles is an arraylist of document titles
+    // docTitles is the store of document titles
+    // docPaths are the corpus entry paths of the documents, if processed
     // corpus, index, and vsm[] are file paths for storing/loading data
 	// corIsDir specifies whether the corpus is a directory or not
-    public static Hashtable<String,Token> datTitle = new Hashtable<>(), 
-        datDoc = new Hashtable<>();
-    public static ArrayList<String> docTitles = new ArrayList<>();
+    // precision is the precision to store vsm weights at (-1 to leave as is)
+    // termScale specifies whether 8-bit weights are scaled per term
+    // reorder is the method of reordering document IDs (see DocOrder.java),
+    //   or an empty string to keep the order of the corpus entry list
+    // resume specifies whether to continue an interrupted build from its
+    //   checkpoint, and checkpoint is the checkpoint of the build (if any)
+    public static TokenTable datTitle = new TokenTable(),
+        datDoc = new TokenTable();
+    public static TitleStore docTitles = new TitleStore();
+    public static ArrayList<String> docPaths = new ArrayList<>();
     public static Model vsmTitle = new Model(), vsmDoc = new Model();
-    private static String corpus = "", index = "", vsm[];
-	private static boolean corIsDir = false;
+    private static String corpus = "", index = "", vsm[], reorder = "";
+	private static boolean corIsDir = false, termScale = false, resume = false;
+    private static byte precision = -1;
+    private static Checkpoint checkpoint = null;
 
     public static void main(String[] args) {
         vsm = new String[]{"", ""};
@@ -72,12 +133,26 @@ public class Corpus {
 			// file was specified, replace all '\' with '/' to prevent errors
 			corIsDir = (new File(corpus)).isDirectory();
 			if (corpus.contains("\\")) { corpus = corpus.replaceAll("\\", "/"); }
-            if (corIsDir) { corpusGenerateInput(); }
-			
-            System.out.println("Generating Tiered Index...");
-            corpusProcess();
-            System.out.println("Saving Tiered Index to Disk...");
-            indexSave();
+            checkpointOpen();
+            if (corIsDir && (checkpoint.blocks() == 0 ||
+                !(new File(corpus+FILE_ENTRY)).exists())) { corpusGenerateInput(); }
+
+            if (checkpoint.indexSaved(index, index+EXT_POS)) {
+                // A resumed build that already saved its index only has the
+                // vsm left to build
+                System.out.println("Reading Saved Tiered Index... Please Wait...");
+                indexLoad();
+            }
+            else {
+                System.out.println("Generating Tiered Index...");
+                corpusProcess();
+                if (!reorder.equals("")) {
+                    System.out.println("Reordering Document IDs ("+reorder+")...");
+                    corpusReorder();
+                }
+                System.out.println("Saving Tiered Index to Disk...");
+                indexSave();
+            }
         }
         else if (!skipIndex) {
             // The corpus phase is being skipped, but the vsm generation phase
@@ -90,10 +165,12 @@ public class Corpus {
             // Generate the VSM using the available tiered index, and save it
             System.out.println("Generating Vector Space Model...");
             corpusVectorSpace();
+            vsmPrecision();
             System.out.println("Saving Vector Space Model to Disk...");
             vsmTitle.save(vsm[0]);
             vsmDoc.save(vsm[1]);
-            vsmTitleSave();
+            vsmTitleSave(vsm[0]);
+            checkpointClose();
         }
         else {
             // Both the corpus and vsm-generation phases have been skipped;
@@ -101,7 +178,8 @@ public class Corpus {
             System.out.println("Reading Vector Space Model... Please Wait...");
             vsmTitle.load(vsm[0]);
             vsmDoc.load(vsm[1]);
-            vsmTitleLoad();
+            vsmTitleLoad(vsm[0]);
+            vsmPrecision();
         }
 
         Query query = new Query(vsmTitle, vsmDoc, docTitles);
@@ -115,41 +193,124 @@ public class Corpus {
      * @param args The set of arguments passed to the program
      */
     public static void argumentCheck(String[] args) {
-        switch(args.length) {
+        // params is the list of arguments that aren't options
+        ArrayList<String> params = new ArrayList<>();
+
+        // Options may be given anywhere on the command line
+        for(String arg : args) {
+            if (arg.startsWith("-prec[")) {
+                precision = Model.parsePrecision(
+                    arg.substring(arg.indexOf('[')+1).replace("]",""));
+                if (precision < 0) {
+                    System.err.println("SYS: Unrecognized precision!");
+                    printUsage();
+                    System.exit(1);
+                }
+            }
+            else if (arg.equals("-termscale"))
+                termScale = true;
+            else if (arg.equals("-scalar"))
+                Model.SIMD = false;
+            else if (arg.equals("-resume"))
+                resume = true;
+            else if (arg.startsWith("-reorder[")) {
+                reorder = arg.substring(arg.indexOf('[')+1).replace("]","");
+                if (!Arrays.asList(DocOrder.METHODS).contains(reorder)) {
+                    System.err.println("SYS: Unrecognized reordering method!");
+                    printUsage();
+                    System.exit(1);
+                }
+            }
+            else if (arg.startsWith("-threads[")) {
+                try {
+                    ParallelLoader.THREADS = Integer.parseInt(
+                        arg.substring(arg.indexOf('[')+1).replace("]",""));
+                }
+                catch(NumberFormatException e) { ParallelLoader.THREADS = 0; }
+
+                if (ParallelLoader.THREADS < 1) {
+                    System.err.println("SYS: Invalid thread count!");
+                    printUsage();
+                    System.exit(1);
+                }
+            }
+            else
+                params.add(arg);
+        }
+
+        switch(params.size()) {
             // Only one argument specified - help
             case 1:
-                if (!args[0].equals("-help"))
+                if (!params.get(0).equals("-help"))
                     System.err.println("SYS: Unrecognized parameter!");
                 printUsage();
                 System.exit(1);
                 break;
             
             // VSM parameters were specified
-            case 2: vsm[0] = args[0]; vsm[1] = args[1]; break;
+            case 2: vsm[0] = params.get(0); vsm[1] = params.get(1); break;
             // VSM and index parameters specified
-            case 3: index = args[0]; vsm[0] = args[1]; vsm[1] = args[2]; break;
+            case 3: index = params.get(0);
+                vsm[0] = params.get(1); vsm[1] = params.get(2); break;
             // All parameters specified
-            case 4: corpus = args[0]; index = args[1];
-                vsm[0] = args[2]; vsm[1] = args[3]; break;
+            case 4: corpus = params.get(0); index = params.get(1);
+                vsm[0] = params.get(2); vsm[1] = params.get(3); break;
             // Unexpected parameter set - terminate and print usage
             default:
                 System.err.println("SYS: Unrecognized set of parameters!");
                 printUsage();
                 System.exit(1);
         }
+
+        // Documents can only be renumbered while a corpus is being processed
+        if (!reorder.equals("") && corpus.equals("")) {
+            System.err.println("SYS: -reorder[m] requires a corpus to process!");
+            printUsage();
+            System.exit(1);
+        }
+
+        // Only a corpus build keeps a checkpoint to resume from, and standard
+        // input can't be told apart from what was read before
+        if (resume && corpus.equals("")) {
+            System.err.println("SYS: -resume requires a corpus to process!");
+            printUsage();
+            System.exit(1);
+        }
+        if (resume && corpus.equals(CorpusSource.STDIN)) {
+            System.err.println("SYS: -resume can't continue a corpus read from standard input!");
+            printUsage();
+            System.exit(1);
+        }
     }
 
     /** Prints the proper usage information for this program */
     public static void printUsage() {
         System.err.println(
-            "Usage: java Corpus <in-corpa> <out-ind> <out-vsm-head> <out-vsm>\n"+
-            "       java Corpus <in-ind> <out-vsm-head> <out-vsm>\n"+
-            "       java Corpus <in-vsm-head> <in-vsm>\n"+
+            "Usage: java Corpus <in-corpa> <out-ind> <out-vsm-head> <out-vsm>"+
+            " [options]\n"+
+            "       java Corpus <in-ind> <out-vsm-head> <out-vsm> [options]\n"+
+            "       java Corpus <in-vsm-head> <in-vsm> [options]\n"+
             "       java Corpus -help\n"+
             "Parameters:\n"+
             "  -help     | Shows this help information\n"+
-            "  in-corpa  | Directory to generate a corpus-entry list for, or\n"+
-            "     a text file containing a corpus-entry list\n"+
+            "  -prec[p]  | Stores vsm weights at precision p: double, float,\n"+
+            "     lin8 (8-bit linear) or log8 (8-bit logarithmic)\n"+
+            "  -termscale | Scales 8-bit weights per term instead of per doc\n"+
+            "  -scalar   | Scores documents without SIMD instructions\n"+
+            "  -reorder[m] | Renumbers documents when a corpus is processed,\n"+
+            "     sorted by entry path or title, or by graph bisection\n"+
+            "     (m: path, title, or bisect)\n"+
+            "  -resume   | Continues an interrupted corpus build from the\n"+
+            "     checkpoint kept beside its index (<out-ind>.ckpt), unless\n"+
+            "     the corpus has changed (not for standard input)\n"+
+            "  -threads[n] | Tokenizes corpus entries, parses index and vsm\n"+
+            "     files, and scores heavy queries on n threads\n"+
+            "     (Default: the number of processors)\n"+
+            "  in-corpa  | Directory to generate a corpus-entry list for, a\n"+
+            "     text file containing a corpus-entry list, a .zip, .tar,\n"+
+            "     .tar.gz, or .gz file, a file of entries that each start\n"+
+            "     with a '.I <id>' line, or - to read any of these (or a\n"+
+            "     single entry) from standard input\n"+
             "  out-vsm-head | Output file for a vsm for doc titles\n"+
             "  out-vsm      | Output file for a vsm for doc content\n"+
             "  out-ind      | Output file for the generated tier index\n"+
@@ -225,7 +386,8 @@ public class Corpus {
 
     /** Processes the corpus, generating token data by reading all of the files
      *  and making appropriate calls to the dictionary and processing functions
-     *  for line data.
+     *  for line data. The files can come from an entry list, an archive, a
+     *  record file, or standard input (see CorpusSource.java).
      * 
      * The format of a corpus entry is specified as follows:
      * -------------------------------------------------------------------------
@@ -240,62 +402,21 @@ public class Corpus {
      * -----------------------------------------------------------------------*/
     public static void corpusProcess() {
         try {
-            // cor is a pointer to the entry-file list
-            // entry is a pointer to the current entry being read/processed
-            // fileCount is the number of entries there are in the corpus
-            // percentile is the number of files that comprise "10%" of the data
-            // complete flags every tenth percentile
-            BufferedReader entry,
-                cor = new BufferedReader(new FileReader(
-					corpus + (corIsDir ? FILE_ENTRY : "")
-				));
-            int fileCount = Integer.parseInt(cor.readLine()),
-                percentile = (int)Math.ceil(1.0*fileCount/10);
-            byte complete = 1;
-			
-			// Strip the corpus entry path to just the directory
-			corpus = corpus.substring(0, corpus.lastIndexOf("/")+1);
-
-            // While there are entries to be processed, process them
-            for(int i=0; i<fileCount; i++) {
-                // Line is temporary storage for lines read from the file
-                // title is the title of the document
-                // docLoc is the current position after a line is processed
-                String line, title="";
-                int docLoc = 1;
-
-                // Percentile message that shows approximately every 10% of
-                // the files being read
-                if (i % percentile == 0 && complete <= 10) {
-                    System.out.printf("%8d of %6d files read. Please wait...\n",
-                        i, fileCount);
-                    complete++;
-                }
-
-                entry=new BufferedReader(new FileReader(corpus+cor.readLine()));
-
-                // Read in the document's data
-                while((line = entry.readLine()) != null) {
-                    switch(line) {
-                        case ".T":
-                            title = readSegment(entry, ".A");
-                            processLine(true, title, i, 0);
-                            docTitles.add(title.trim().replace(".",""));
-                            break;
-                        case ".A":
-                        case ".B":
-                            break;
-                        case ".W":
-                            while((line = entry.readLine()) != null)
-                                docLoc = processLine(false, line, i, docLoc);
-                            break;
-                    }
-                }
-
-                entry.close();
-            }
-
-            cor.close();
+            // src streams the entries of the entry list, archive, or standard
+            // input (see CorpusSource.java), which are read, tokenized, and
+            // merged into the index (see Ingest.java)
+            CorpusSource src = CorpusSource.open(
+                corpus + (corIsDir ? FILE_ENTRY : ""));
+            Duet<ArrayList<String>,ArrayList<String>> res = Ingest.run(src,
+                datTitle, datDoc, checkpoint, ParallelLoader.THREADS);
+            src.close();
+
+            for(String title : res.dataA)
+                docTitles.add(title);
+            docPaths.addAll(res.dataB);
+
+            datTitle.trim();
+            datDoc.trim();
         }
         catch(IOException e) {
             System.err.println("ERR: Error during corpus processing!");
@@ -336,27 +457,102 @@ public class Corpus {
         return res;
     }
 
-    /** Saves the generated tiered index to the disk */
+    /**
+     * Renumbers the documents of the tiered index by the chosen reordering
+     * method, remapping the titles, entry paths, and postings of both tiers.
+     * The size of the doc-ID gaps before and after is reported, and the
+     * mapping is saved beside the index (<out-ind>.map) as lines of the form
+     * <NEW ID> <OLD ID> <ENTRY PATH>, where old IDs follow the corpus entry list
+     */
+    public static void corpusReorder() {
+        // order is the old ID of each new ID, and map the new ID of each old ID
+        // before is the gap cost of each tier before renumbering
+        int[] order, map = new int[docTitles.size()];
+        double[][] before = { DocOrder.gapCost(datTitle), DocOrder.gapCost(datDoc) };
+
+        ArrayList<String> keys = new ArrayList<>();
+        switch(reorder) {
+            case "path": order = DocOrder.byKey(docPaths); break;
+            case "title":
+                for(int i=0; i<docTitles.size(); i++)
+                    keys.add(docTitles.get(i));
+                order = DocOrder.byKey(keys);
+                break;
+            default: order = DocOrder.bisect(datDoc, docTitles.size());
+        }
+
+        // Remap the postings, and rebuild the titles and paths in the new order
+        for(int i=0; i<order.length; i++) { map[order[i]] = i; }
+        datTitle.remap(map);
+        datDoc.remap(map);
+
+        TitleStore titles = new TitleStore();
+        ArrayList<String> paths = new ArrayList<>(docPaths.size());
+        for(int i=0; i<order.length; i++) {
+            titles.add(docTitles.get(order[i]));
+            paths.add(docPaths.get(order[i]));
+        }
+        docTitles = titles;
+        docPaths = paths;
+
+        // Report the sizes of the doc-ID gaps
+        double[][] after = { DocOrder.gapCost(datTitle), DocOrder.gapCost(datDoc) };
+        for(int k=0; k<2; k++)
+            System.out.printf("  %-8s doc-ID gaps: %,d -> %,d bytes as varints,"+
+                " %.2f -> %.2f bits/gap\n", (k==0 ? "Title" : "Content"),
+                (long)before[k][0], (long)after[k][0],
+                before[k][1]/Math.max(1, before[k][2]),
+                after[k][1]/Math.max(1, after[k][2]));
+
+        // Save the mapping beside the index
+        try {
+            BufferedWriter w = new BufferedWriter(new FileWriter(index+EXT_MAP));
+            for(int i=0; i<order.length; i++)
+                w.write(i+" "+order[i]+" "+docPaths.get(i)+"\n");
+            w.close();
+            System.out.println("  The mapping was saved to '"+index+EXT_MAP+"'");
+        }
+        catch(IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Saves the generated tiered index to the disk. Token records hold each
+     *  token's documents and frequencies, and its positions are written to a
+     *  positions file beside the index (<out-ind>.pos) */
     public static void indexSave() {
         try {
+            // w is the index, and pos the positions file
+            // at is the number of bytes written to the positions file
             BufferedWriter w = new BufferedWriter(new FileWriter(index));
+            BufferedOutputStream pos = new BufferedOutputStream(
+                new FileOutputStream(index+EXT_POS));
+            long at = 0;
 
             // Document titles
             w.write(docTitles.size()+"\n");
             for(int i=0; i<docTitles.size(); i++)
                 w.write(docTitles.get(i)+"\n");
 
-            // Tokens in the titles
-            for(Token t : Collections.list(datTitle.elements()))
-                w.write(t.toString()+"\n");
+            // Tokens in the titles; each token streams its own record
+            for(Token t : datTitle.tokens()) {
+                at += t.writeTo(w, pos, at);
+                w.write("\n");
+            }
 
             w.write("-\n");
 
             // Tokens in the document content
-            for(Token t : Collections.list(datDoc.elements()))
-                w.write(t.toString()+"\n");
+            for(Token t : datDoc.tokens()) {
+                at += t.writeTo(w, pos, at);
+                w.write("\n");
+            }
 
             w.close();
+            pos.close();
+            if (checkpoint != null)
+                checkpoint.markIndexSaved(index, index+EXT_POS);
         }
         catch(IOException e) {
             System.err.println(e.getMessage());
@@ -364,50 +560,120 @@ public class Corpus {
         }
     }
 
-    /** Loads a previously-generated tiered index from the disk */
-    public static void indexLoad() {
+    /** Opens the checkpoint kept beside the index while it's built, resuming
+     *  from it if -resume was given (see Checkpoint.java) */
+    public static void checkpointOpen() {
         try {
-            // data is used for temporarily storing lines from the file
-            // tmp is used for temporarily referencing Tokens before putting
-            // them into the hashtables
-            BufferedReader r = new BufferedReader(new FileReader(index));
-            String data;
-            Token tmp;
-
-            // Document titles
-            for(int i=Integer.parseInt(r.readLine()); i>0; i--)
-                docTitles.add(r.readLine());
-
-            // Title tokens end when a hyphen is read as a line
-            while(!(data = r.readLine()).equals("-")) {
-                tmp = new Token("word");
-                tmp.read(data);
-                datTitle.put(tmp.stem, tmp);
-            }
+            checkpoint = Checkpoint.open(index+EXT_CKPT, corpus, resume);
+        }
+        catch(IOException e) {
+            System.err.println("ERR: Error opening the checkpoint!");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
 
-            // Document content tokens span until the end of the file
-            while((data = r.readLine()) != null) {
-                tmp = new Token("word");
-                tmp.read(data);
-                datDoc.put(tmp.stem, tmp);
-            }
+    /** Deletes the checkpoint once the build it tracks is saved */
+    public static void checkpointClose() {
+        if (checkpoint == null) { return; }
 
-            r.close();
+        try {
+            checkpoint.delete();
+            checkpoint = null;
         }
         catch(IOException e) {
             System.err.println(e.getMessage());
             System.exit(1);
         }
     }
+
+    /**
+     * Loads a previously-generated tiered index from the disk. The titles are
+     * read first, and then the token records are parsed concurrently (see
+     * ParallelLoader.java) and added to the token tables in file order, so
+     * every token gets the same ID a line-by-line load would give it.
+     * Positions are left in the positions file beside the index, if it has
+     * one, which stays open so they can be read when needed; older indexes
+     * hold their positions in the token records
+     */
+    public static void indexLoad() {
+        try {
+            // lines is used for temporarily storing the header lines
+            // start is the offset of the first token record
+            // pos is the positions file (null if the index has none)
+            FileChannel ch = FileChannel.open(new File(index).toPath(),
+                StandardOpenOption.READ), pos = null;
+            if ((new File(index+EXT_POS)).exists())
+                pos = FileChannel.open(new File(index+EXT_POS).toPath(),
+                    StandardOpenOption.READ);
+            final FileChannel positions = pos;
+            ArrayList<String> lines = new ArrayList<>();
+            long start = ParallelLoader.readLines(ch, 0, 1, lines);
+
+            // Document titles
+            start = ParallelLoader.readLines(ch, start,
+                Integer.parseInt(lines.get(0).trim()), lines);
+            for(int i=1; i<lines.size(); i++)
+                docTitles.add(lines.get(i));
+
+            // Parse the token records of every range of the file; each range
+            // notes where the hyphen that ends the title tokens was, if it
+            // held it
+            ArrayList<Duet<Integer,ArrayList<Token>>> chunks = ParallelLoader.parse(
+                ch, ParallelLoader.split(ch, start, ch.size()),
+                in -> indexChunk(in, positions));
+            ch.close();
+
+            // Title tokens end where the hyphen was read, and document content
+            // tokens span until the end of the file
+            TokenTable table = datTitle;
+            for(Duet<Integer,ArrayList<Token>> c : chunks)
+                for(int k=0; k<=c.dataB.size(); k++) {
+                    if (k == c.dataA) { table = datDoc; }
+                    if (k < c.dataB.size()) { table.putIfAbsent(c.dataB.get(k)); }
+                }
+        }
+        catch(IOException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses the token records in one range of a tiered index file
+     * @param in The records of the range
+     * @param pos The positions file of the index (or null)
+     * @return The position among the range's tokens where the hyphen ending
+     *   the title tokens was read (or -1 if it wasn't in the range), and the
+     *   tokens of the range in file order
+     */
+    private static Duet<Integer,ArrayList<Token>> indexChunk(RecordReader in,
+        FileChannel pos) throws IOException {
+        Duet<Integer,ArrayList<Token>> res = new Duet<>(-1, new ArrayList<>());
+
+        while(in.peek() != null) {
+            if (in.peek().equals("-")) {
+                res.dataA = res.dataB.size();
+                in.word();
+                continue;
+            }
+
+            // tmp is the token the next record is read into
+            Token tmp = new Token("word");
+            tmp.readFrom(in, pos);
+            tmp.postings.trim();
+            res.dataB.add(tmp);
+        }
+
+        return res;
+    }
     
     /** Generates the vector space model for the current set of token data */
     public static void corpusVectorSpace() {
-        // tokens is a list of tokens in one of the index tiers
-        // table is the current hashtable of tokens being worked with
+        // table is the current table of tokens being worked with
         // cModel is the current model being worked with
         // weight is the IDF weight of the token
-        Hashtable<String,Token> table;
-        ArrayList<String> tokens;
+        TokenTable table;
         Model cModel;
         double weight;
 
@@ -419,33 +685,28 @@ public class Corpus {
         for(int i=0; i<2; i++) {
             table = (i==0 ? datTitle : datDoc);
             cModel = (i==0 ? vsmTitle : vsmDoc);
-            tokens = Collections.list(table.keys());
 
             // For every token, compute the IDF weight, and then assign that
             // token component's weight to the IDF weight multiplied by the TF
             // weight of that token for each document
-            for(String t : tokens) {
-                Token tok = table.get(t);
+            for(Token tok : table.tokens()) {
                 weight = tok.weightIdf(docTitles.size());
 
-                for(int tDoc : Collections.list(tok.postings.keys()))
-                    cModel.setDocComponent(tDoc, t, weight*tok.weightTf(tDoc));
+                for(int k=0; k<tok.postings.size(); k++)
+                    cModel.setDocComponent(tok.postings.doc(k), tok.stem,
+                        weight*tok.weightTf(tok.postings.doc(k)));
             }
 
             cModel.normalize();
         }
     }
 
-    /** Saves all the titles in the vector space model in the VSM file */
-    public static void vsmTitleSave() {
+    /** Saves all the titles of the vector space model to a title file beside
+     *  the title VSM file
+     *  @param head The location of the title VSM file */
+    public static void vsmTitleSave(String head) {
         try {
-            BufferedWriter w = new BufferedWriter(new FileWriter(vsm[0], true));
-
-            // Write all the titles to the file
-            for(int i=0; i<docTitles.size(); i++)
-                w.write(docTitles.get(i)+"\n");
-
-            w.close();
+            docTitles.save(head+EXT_TITLES);
         }
         catch(IOException e) {
             System.err.println(e.getMessage());
@@ -453,14 +714,22 @@ public class Corpus {
         }
     }
 
-    /** Loads all the titles in a prior-saved vector space model */
-    public static void vsmTitleLoad() {
+    /** Loads all the titles of a prior-saved vector space model. Titles are
+     *  mapped from the title file beside the title VSM file; VSM files saved
+     *  before title files existed have the titles appended instead
+     *  @param head The location of the title VSM file */
+    public static void vsmTitleLoad(String head) {
         try {
+            if ((new File(head+EXT_TITLES)).exists()) {
+                docTitles.load(head+EXT_TITLES);
+                return;
+            }
+
             String tmp;
-            BufferedReader r = new BufferedReader(new FileReader(vsm[0]));
+            BufferedReader r = new BufferedReader(new FileReader(head));
 
             // Skip down to where the titles are stored
-            for(int i=Integer.parseInt(r.readLine()); i>0; i--)
+            for(int i=Integer.parseInt(r.readLine().split(" ")[0]); i>0; i--)
                 r.readLine();
 
             // Read in all the titles
@@ -475,41 +744,61 @@ public class Corpus {
         }
     }
 
-    /**
-     * Processes a line of text, updating the appropriate index tier
-     * @param isTitle Is the line being processed the document's title
-     * @param line The line of text being processed
-     * @param doc The ID of the document
-     * @param loc The current location, in the document, if applicable
-     * @return The updated value for the current location in the document
-     */
-    public static int processLine(boolean isTitle,String line,int doc,int loc) {
-        // Preprocess the line and select the tier of the index working with
-        line = preProcessLine(line);
-        Hashtable<String,Token> ind = (isTitle ? datTitle : datDoc);
-
-        // Loop through each word in the line, not including blanks generated
-        // by multi-space gaps between words. This generates the postings lists
-        for(String word : line.split(" ")) {
-            if (!word.equals("")) {
-                // Add the token to the index, if it doesn't already exist,
-                // and add the current location to the postings list
-                Token t = new Token(word);
-                if (ind.putIfAbsent(t.stem, t) != null) {
-                    t = ind.get(t.stem);
-                    t.variants.add(word);
+    /** Stores the weights of both vector space models at the precision given
+     *  on the command line. When a model is converted from double precision,
+     *  document titles are run as queries against it before and after, and
+     *  the overlap of their top results is reported */
+    public static void vsmPrecision() {
+        if (precision < 0) { return; }
+
+        // queries are the title queries used to measure ranking agreement
+        // models and names are the models to convert, and their labels
+        ArrayList<Hashtable<String,Double>> queries = new ArrayList<>();
+        Model[] models = { vsmTitle, vsmDoc };
+        String[] names = { "Titles ", "Content" };
+
+        for(int i=0; i<docTitles.size();
+            i+=Math.max(1, docTitles.size()/AGREE_QUERIES))
+            queries.add(Query.queryGen(preProcessLine(docTitles.get(i)).split(" ")));
+
+        System.out.printf("Storing Vector Space Model as %s...\n",
+            Model.PREC_NAMES[precision]+(precision < Model.PREC_LIN8 ? "" :
+            (termScale ? " (term scales)" : " (doc scales)")));
+
+        for(int m=0; m<2; m++) {
+            // ref is the top documents of each query before conversion
+            // bytes is the size of the model's weights before conversion
+            // overlap is the number of top documents that survive conversion
+            boolean compare = (models[m].getPrecision() == Model.PREC_DOUBLE);
+            ArrayList<int[]> ref = null, res;
+            long bytes = models[m].weightBytes();
+            int overlap = 0, total = 0;
+
+            if (compare)
+                ref = models[m].topDocuments(queries, AGREE_TOP);
+
+            models[m].setPrecision(precision, termScale);
+
+            if (compare) {
+                res = models[m].topDocuments(queries, AGREE_TOP);
+                for(int i=0; i<queries.size(); i++) {
+                    int[] a = ref.get(i), b = res.get(i);
+                    for(int x : a)
+                        for(int y : b)
+                            if (x == y) { overlap++; break; }
+                    total += a.length;
                 }
-
-                if (!t.postings.containsKey(doc))
-                    t.postings.putIfAbsent(doc, new ArrayList<Integer>());
-                t.postings.get(doc).add(loc);
-
-                loc++;
             }
-        }
 
-        // Return the updated location in the document
-        return loc;
+            System.out.printf("  %s: %,d KB -> %,d KB of weights", names[m],
+                bytes/1024, models[m].weightBytes()/1024);
+            if (compare)
+                System.out.printf(", top-%d agreement %.1f%% (%d queries)\n",
+                    AGREE_TOP, (total == 0 ? 100.0 : 100.0*overlap/total),
+                    queries.size());
+            else
+                System.out.println(" (no double-precision reference)");
+        }
     }
 
     /**
@@ -531,23 +820,23 @@ public class Corpus {
      */
     public static String preProcessLine(String line) {
         line = line.toLowerCase();
-        String stripped = ""; // String generated by preprocessing
+        StringBuilder stripped = new StringBuilder(line.length()); // Line generated by preprocessing
 
         // Iterate through ALL characters to apply the rules for preprocessing
         for(int i=0; i<line.length(); i++) {
             char c = line.charAt(i); // Character to be tested
 
             if (isLetorNum(c) || c==' ')
-                stripped += Character.toString(c);
+                stripped.append(c);
             else if (c=='-') {
                 // Attempt retrieval of characters before and after the current
                 // to test for the 2nd rule; if an exception occurs, ignore it
                 try {
                     char p = line.charAt(i-1), n = line.charAt(i+1);
                     if (isLetorNum(p) && isLetorNum(n))
-                        stripped += '-';
+                        stripped.append('-');
                     else if (n=='-')
-                        stripped += ' ';
+                        stripped.append(' ');
                 }
                 catch(Exception e) { /* Do nothing */ }
             }
@@ -557,15 +846,15 @@ public class Corpus {
                 try {
                     char p = line.charAt(i-1), n = line.charAt(i+1);
                     if (Character.isDigit(p) && Character.isDigit(n))
-                        stripped += ',';
+                        stripped.append(',');
                 }
                 catch(Exception e) { /* Do nothing */ }
             }
             else if (!(c=='\''))
-                stripped += ' ';
+                stripped.append(' ');
         }
 
-        return stripped;
+        return stripped.toString();
     }
 
     /**
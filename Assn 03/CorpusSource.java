@@ -0,0 +1,625 @@
+/**
+ * File:    CorpusSource.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.2
+ * Description:
+ * CorpusSource streams the entries of a corpus, one at a time, to the read
+ * stage of Ingest. Each entry is read whole into memory, along with its path
+ * and document ID; nothing is extracted to disk. A corpus can come from:
+ * - an entry list: a file holding the number of entries and then the path
+ *   of each, relative to the list's directory (see Corpus.corpusGenerateInput).
+ *   Entries are read largest first, and their document IDs follow the list
+ * - a .zip, .tar, or .tar.gz (.tgz) archive, whose regular files are the
+ *   entries, given document IDs in the order the archive holds them
+ * - a single .gz file, which is one entry
+ * - a record file: many entries concatenated in one file, each starting with
+ *   a line '.I <ID>' (the CACM/Cranfield layout). Entries are given document
+ *   IDs in file order, and their paths are '<FILE>#<ID>'
+ * - standard input (given as '-'), which may hold any of the above, or a
+ *   single plain entry
+ *
+ * Formats are recognized by their first bytes rather than their names, and
+ * any entry of a list or archive that's gzipped is decompressed as it's read.
+ * Files named like an auto-generated entry list (corpus.dat) are skipped in
+ * archives, so an archive of a corpus directory indexes as the directory did.
+ *
+ * A record file on disk is memory-mapped rather than read. It's cut into
+ * ranges of whole lines (see ParallelLoader.split), which are scanned for
+ * '.I' lines concurrently, and the record offsets of the ranges are joined in
+ * file order. The records are then mapped in chunks that start and end on
+ * record boundaries, and handed out in file order, so the mapping is read
+ * sequentially while the records are tokenized in parallel. A record file
+ * that's streamed (gzipped, or on standard input) is split as it's read.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ * Version 1.1 (18 October 2026)
+ * - Added record files, which hold many entries separated by '.I' lines
+ * Version 1.2 (18 October 2026)
+ * - Entry lists can pass over documents already indexed (see skip), for
+ *   resumed builds
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipEntry;
+import java.util.concurrent.Callable;
+import java.io.File;
+import java.io.InputStream;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+abstract class CorpusSource {
+  // STDIN is the corpus name that reads from standard input
+  // BLOCK is the size of a tar block
+  // PEEK is the number of leading bytes read to recognize a format
+  // CHUNK is the size of the chunks a record file is mapped in
+  public static final String STDIN = "-";
+  private static final int BLOCK = 512, PEEK = 265, CHUNK = 1 << 26;
+
+  /** One entry of a corpus */
+  static class Item {
+    // doc is the document ID of the entry
+    // path is the entry's path in its list or archive
+    // data is the content of the entry, decompressed if it was gzipped
+    int doc;
+    String path;
+    byte[] data;
+
+    Item(int doc, String path, byte[] data) throws IOException {
+      this.doc = doc;
+      this.path = path;
+      this.data = data;
+
+      if (format(data) == Format.GZIP) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+          this.data = in.readAllBytes();
+        }
+      }
+    }
+  }
+
+  // consumed is the number of bytes read from the corpus so far, and size
+  //   the number there are to read (-1 if unknown)
+  // raw is the stream a streamed corpus is read from, which counts the bytes
+  //   read instead (null for entry lists)
+  // skip are the documents not to read, if the source can pass over them
+  //   without reading them (the caller must still drop them otherwise)
+  protected volatile long consumed = 0;
+  protected long size = -1;
+  protected Counter raw = null;
+  protected DocSet skip = new DocSet();
+
+  /**
+   * Reads the next entry of the corpus
+   * @return The entry, or null once every entry has been read
+   */
+  public abstract Item next() throws IOException;
+
+  /**
+   * Notes documents that are already indexed, so entry lists can pass over
+   * their files instead of reading them
+   * @param docs The document IDs to pass over
+   */
+  public void skip(DocSet docs) { skip = docs; }
+
+  /** Releases the files the source has open */
+  public void close() throws IOException {}
+
+  /** Returns the number of bytes read from the corpus so far, as stored
+   *  (compressed, for archives) */
+  public long consumed() { return (raw == null ? consumed : raw.count); }
+
+  /** Returns the number of bytes in the corpus as stored, or -1 if it can't
+   *  be known until the corpus has been read */
+  public long size() { return size; }
+
+  /**
+   * Opens a corpus, recognizing its format by its first bytes
+   * @param loc An entry list, an archive, or '-' for standard input
+   * @return The source of the corpus' entries
+   */
+  public static CorpusSource open(String loc) throws IOException {
+    if (loc.equals(STDIN)) { return stream(System.in, "stdin", -1); }
+
+    // Entry lists and record files are read in place; anything else is
+    // streamed
+    File f = new File(loc);
+    Format fmt = Format.PLAIN;
+    if (f.isFile())
+      try (InputStream in = new FileInputStream(f)) {
+        fmt = format(in.readNBytes(PEEK));
+      }
+
+    switch(fmt) {
+      case PLAIN:   return new ListSource(f);
+      case RECORDS: return new MappedRecordSource(f);
+      default:      return stream(new FileInputStream(f), f.getName(), f.length());
+    }
+  }
+
+  /**
+   * Opens a stream holding an archive, a gzipped file, or a plain entry
+   * @param in The stream
+   * @param name The name of the stream, which names a plain entry
+   * @param size The number of bytes in the stream, or -1 if unknown
+   * @return The source of the stream's entries
+   */
+  private static CorpusSource stream(InputStream in, String name, long size)
+    throws IOException {
+    // counter counts the bytes read from the stream as stored, beneath any
+    // decompression
+    CorpusSource res;
+    Counter counter = new Counter(in);
+    BufferedInputStream buf = new BufferedInputStream(counter, 1 << 16);
+    Format fmt = peek(buf);
+    InputStream body = buf;
+    if (fmt == Format.GZIP) {
+      // A gzipped stream holds a tar archive, or a single entry
+      body = new BufferedInputStream(new GZIPInputStream(buf, 1 << 16), 1 << 16);
+      fmt = peek(body);
+      name = name.replaceAll("\\.tgz$", ".tar").replaceAll("\\.gz$", "");
+    }
+
+    switch(fmt) {
+      case ZIP:     res = new ZipSource(body); break;
+      case TAR:     res = new TarSource(body); break;
+      case RECORDS: res = new RecordStreamSource(body, name); break;
+      default:      res = new PlainSource(body, name); break;
+    }
+
+    res.size = size;
+    res.raw = counter;
+    return res;
+  }
+
+  /** A stream that counts the bytes read from it */
+  private static class Counter extends FilterInputStream {
+    // count is the number of bytes read
+    volatile long count = 0;
+
+    Counter(InputStream in) { super(in); }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) { count++; }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException {
+      int n = super.read(buf, off, len);
+      if (n > 0) { count += n; }
+      return n;
+    }
+  }
+
+  /** The formats a corpus stream can have */
+  private enum Format { PLAIN, GZIP, ZIP, TAR, RECORDS }
+
+  /** Reads the format of a stream from its first bytes, leaving them to be
+   *  read again */
+  private static Format peek(InputStream in) throws IOException {
+    in.mark(PEEK);
+    byte[] head = in.readNBytes(PEEK);
+    in.reset();
+    return format(head);
+  }
+
+  /** Returns the format that a stream starting with the given bytes has */
+  private static Format format(byte[] head) {
+    if (head.length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B)
+      return Format.GZIP;
+    if (head.length >= 4 && head[0] == 'P' && head[1] == 'K' &&
+        ((head[2] == 3 && head[3] == 4) || (head[2] == 5 && head[3] == 6)))
+      return Format.ZIP;
+    if (head.length >= 262 && new String(head, 257, 5,
+        StandardCharsets.US_ASCII).equals("ustar"))
+      return Format.TAR;
+
+    // A record file starts with a '.I' line, after any blank lines
+    int at = 0;
+    while(at < head.length && Character.isWhitespace(head[at])) { at++; }
+    if (isRecordStart(head, at, head.length))
+      return Format.RECORDS;
+    return Format.PLAIN;
+  }
+
+  /**
+   * Returns whether a line starts a record of a record file: it's '.I',
+   * alone or followed by a space and the record's ID
+   * @param b The bytes holding the line
+   * @param at The offset of the start of the line
+   * @param end The offset where the bytes end
+   */
+  private static boolean isRecordStart(byte[] b, int at, int end) {
+    return at+1 < end && b[at] == '.' && b[at+1] == 'I' && (at+2 == end ||
+      b[at+2] == ' ' || b[at+2] == '\t' || b[at+2] == '\r' || b[at+2] == '\n');
+  }
+
+  /**
+   * Returns the path of a record: the name of its file and the ID on its
+   * '.I' line
+   * @param name The name of the record file
+   * @param rec The bytes of the record
+   */
+  private static String recordPath(String name, byte[] rec) {
+    int end = 0;
+    while(end < rec.length && rec[end] != '\n') { end++; }
+    return name+"#"+new String(rec, 0, end, StandardCharsets.UTF_8)
+      .substring(2).trim();
+  }
+
+  /** Returns whether an archive entry is an entry list left in a corpus
+   *  directory, rather than a document */
+  private static boolean isEntryList(String path) {
+    return path.equals(Corpus.FILE_ENTRY) || path.endsWith("/"+Corpus.FILE_ENTRY);
+  }
+
+  /** The entries of an entry list, read largest first */
+  private static class ListSource extends CorpusSource {
+    // dir is the directory the entry paths are relative to
+    // paths are the entry paths, indexed by document ID
+    // order is the document IDs in the order they're read, and at the
+    //   number read so far
+    private String dir;
+    private ArrayList<String> paths = new ArrayList<>();
+    private int[] order;
+    private int at = 0;
+
+    ListSource(File list) throws IOException {
+      BufferedReader r = new BufferedReader(new FileReader(list));
+      int cnt;
+      try { cnt = Integer.parseInt(r.readLine().trim()); }
+      catch(NumberFormatException | NullPointerException e) {
+        r.close();
+        throw new IOException("'"+list+"' isn't a corpus entry list");
+      }
+
+      for(int i=0; i<cnt; i++) { paths.add(r.readLine()); }
+      r.close();
+
+      // Strip the entry list's path to just the directory
+      String loc = list.getPath().replace("\\", "/");
+      dir = loc.substring(0, loc.lastIndexOf("/")+1);
+
+      // Each ID is packed beside its negated file size, so a single
+      // primitive sort orders the entries largest first, ties by ID
+      long[] keys = new long[cnt];
+      size = 0;
+      for(int doc=0; doc<cnt; doc++) {
+        long len = new File(dir+paths.get(doc)).length();
+        size += len;
+        keys[doc] = ((0x7FFFFFFFL-Math.min(len, 0x7FFFFFFFL)) << 32) | doc;
+      }
+      Arrays.sort(keys);
+
+      order = new int[cnt];
+      for(int i=0; i<cnt; i++) { order[i] = (int)keys[i]; }
+    }
+
+    @Override
+    public Item next() throws IOException {
+      // Files of documents already indexed count as read, without reading
+      while(at < order.length && skip.contains(order[at]))
+        consumed += new File(dir+paths.get(order[at++])).length();
+      if (at == order.length) { return null; }
+
+      int doc = order[at++];
+      byte[] data = Files.readAllBytes(new File(dir+paths.get(doc)).toPath());
+      consumed += data.length;
+      return new Item(doc, paths.get(doc), data);
+    }
+  }
+
+  /** The regular files of a zip archive, in archive order */
+  private static class ZipSource extends CorpusSource {
+    // in is the archive, and docs the number of entries read from it
+    private ZipInputStream in;
+    private int docs = 0;
+
+    ZipSource(InputStream in) { this.in = new ZipInputStream(in); }
+
+    @Override
+    public Item next() throws IOException {
+      ZipEntry e;
+      while((e = in.getNextEntry()) != null)
+        if (!e.isDirectory() && !isEntryList(e.getName()))
+          return new Item(docs++, e.getName(), in.readAllBytes());
+      return null;
+    }
+
+    @Override
+    public void close() throws IOException { in.close(); }
+  }
+
+  /** The regular files of a tar archive (ustar, with GNU or pax long names),
+   *  in archive order */
+  private static class TarSource extends CorpusSource {
+    // in is the archive, and docs the number of entries read from it
+    // head is the header block of the current entry
+    private InputStream in;
+    private int docs = 0;
+    private byte[] head = new byte[BLOCK];
+
+    TarSource(InputStream in) { this.in = in; }
+
+    @Override
+    public Item next() throws IOException {
+      // longName is a name given by a GNU or pax header, for the next entry
+      String longName = null;
+
+      while(true) {
+        if (in.readNBytes(head, 0, BLOCK) < BLOCK) { return null; }
+
+        // Two blocks of zeros end the archive; one is enough to stop at
+        boolean zero = true;
+        for(byte b : head) { if (b != 0) { zero = false; break; } }
+        if (zero) { return null; }
+
+        long len = number(124, 12);
+        char type = (char)head[156];
+        byte[] data = in.readNBytes((int)len);
+        if (data.length < len)
+          throw new IOException("Unexpected end of the tar archive");
+        in.skipNBytes((BLOCK - len%BLOCK) % BLOCK);
+
+        switch(type) {
+          case 'L':
+            longName = cString(data, 0, data.length);
+            break;
+          case 'x':
+            String path = paxPath(data);
+            if (path != null) { longName = path; }
+            break;
+          case '0':
+          case '\0':
+          case '7':
+            String name = (longName != null ? longName : headerName());
+            longName = null;
+            if (!isEntryList(name)) { return new Item(docs++, name, data); }
+            break;
+          default:
+            // Directories, links, and global headers aren't entries
+            longName = null;
+            break;
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException { in.close(); }
+
+    /** Returns the name in the header, joined to its ustar prefix if any */
+    private String headerName() {
+      String name = cString(head, 0, 100), prefix = cString(head, 345, 155);
+      return (prefix.equals("") ? name : prefix+"/"+name);
+    }
+
+    /** Reads a numeric header field: octal digits, or a big-endian binary
+     *  number if the high bit of its first byte is set */
+    private long number(int off, int len) throws IOException {
+      long res = 0;
+      if ((head[off] & 0x80) != 0) {
+        for(int i=1; i<len; i++) { res = (res << 8) | (head[off+i] & 0xFF); }
+        return res;
+      }
+
+      for(int i=off; i<off+len; i++) {
+        if (head[i] == 0 || head[i] == ' ') {
+          if (res > 0) { break; }
+          continue;
+        }
+        if (head[i] < '0' || head[i] > '7')
+          throw new IOException("Malformed tar header");
+        res = (res << 3) | (head[i] - '0');
+      }
+
+      return res;
+    }
+
+    /** Returns the 'path' record of a pax header, or null if it has none.
+     *  Each record is '<LENGTH> <KEY>=<VALUE>\n' */
+    private static String paxPath(byte[] data) {
+      int at = 0;
+      while(at < data.length) {
+        int sp = at;
+        while(sp < data.length && data[sp] != ' ') { sp++; }
+        if (sp == data.length) { break; }
+
+        int len = Integer.parseInt(new String(data, at, sp-at,
+          StandardCharsets.US_ASCII));
+        String rec = new String(data, sp+1, len-(sp-at)-2, StandardCharsets.UTF_8);
+        if (rec.startsWith("path=")) { return rec.substring(5); }
+        at += len;
+      }
+
+      return null;
+    }
+
+    /** Decodes a NUL-terminated string from a header */
+    private static String cString(byte[] b, int off, int len) {
+      int end = off;
+      while(end < off+len && b[end] != 0) { end++; }
+      return new String(b, off, end-off, StandardCharsets.UTF_8);
+    }
+  }
+
+  /** The records of a record file on disk, mapped in chunks and handed out
+   *  in file order */
+  private static class MappedRecordSource extends CorpusSource {
+    // name is the file's name, and ch the file
+    // starts are the offsets of the records, plus the end of the file
+    // chunk is the mapping of the records from chunkAt up to chunkEnd
+    // at is the number of records handed out
+    private String name;
+    private FileChannel ch;
+    private long[] starts;
+    private MappedByteBuffer chunk = null;
+    private int at = 0, chunkAt = 0, chunkEnd = 0;
+
+    MappedRecordSource(File f) throws IOException {
+      name = f.getName();
+      ch = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+      size = ch.size();
+
+      // Scan ranges of whole lines for the starts of records, concurrently
+      long[] bounds = ParallelLoader.split(ch, 0, size);
+      ArrayList<Callable<long[]>> tasks = new ArrayList<>();
+      for(int i=0; i+1<bounds.length; i++) {
+        long from = bounds[i], to = bounds[i+1];
+        tasks.add(() -> scan(from, to));
+      }
+
+      int cnt = 0;
+      ArrayList<long[]> found = ParallelLoader.run(tasks);
+      for(long[] s : found) { cnt += s.length; }
+
+      starts = new long[cnt+1];
+      cnt = 0;
+      for(long[] s : found) {
+        System.arraycopy(s, 0, starts, cnt, s.length);
+        cnt += s.length;
+      }
+      starts[cnt] = size;
+    }
+
+    /**
+     * Finds the records that start in a range of whole lines
+     * @param from The offset of the first line of the range
+     * @param to The offset just past the range
+     * @return The offsets of the records, in file order
+     */
+    private long[] scan(long from, long to) throws IOException {
+      MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, from, to-from);
+      long[] res = new long[16];
+      byte[] line = new byte[3];
+      int cnt = 0;
+
+      for(int i=0, n=(int)(to-from); i<n; ) {
+        int len = Math.min(3, n-i);
+        buf.get(i, line, 0, len);
+        if (isRecordStart(line, 0, len)) {
+          if (cnt == res.length) { res = Arrays.copyOf(res, cnt*2); }
+          res[cnt++] = from+i;
+        }
+
+        while(i < n && buf.get(i) != '\n') { i++; }
+        i++;
+      }
+
+      return Arrays.copyOf(res, cnt);
+    }
+
+    @Override
+    public Item next() throws IOException {
+      if (at+1 >= starts.length) { return null; }
+
+      // Map the next chunk of whole records once this one is used up; a
+      // chunk holds at least one record, and no more than CHUNK bytes
+      // beyond it
+      if (at >= chunkEnd) {
+        chunkAt = chunkEnd = at;
+        do { chunkEnd++; }
+        while(chunkEnd+1 < starts.length &&
+          starts[chunkEnd+1]-starts[chunkAt] <= CHUNK);
+        chunk = ch.map(FileChannel.MapMode.READ_ONLY, starts[chunkAt],
+          starts[chunkEnd]-starts[chunkAt]);
+      }
+
+      byte[] rec = new byte[(int)(starts[at+1]-starts[at])];
+      chunk.get((int)(starts[at]-starts[chunkAt]), rec);
+      consumed = starts[at+1];
+      at++;
+      return new Item(at-1, recordPath(name, rec), rec);
+    }
+
+    @Override
+    public void close() throws IOException { ch.close(); }
+  }
+
+  /** The records of a streamed record file, split as they're read */
+  private static class RecordStreamSource extends CorpusSource {
+    // in is the stream, and name the record file's name
+    // line is the line just read that starts the next record (null once
+    //   the stream has ended)
+    // docs is the number of records read
+    private InputStream in;
+    private String name;
+    private byte[] line;
+    private int docs = 0;
+
+    RecordStreamSource(InputStream in, String name) throws IOException {
+      this.in = in;
+      this.name = name;
+
+      // Skip to the first record
+      while((line = readLine()) != null && !isRecordStart(line, 0, line.length));
+    }
+
+    @Override
+    public Item next() throws IOException {
+      if (line == null) { return null; }
+
+      ByteArrayOutputStream rec = new ByteArrayOutputStream();
+      rec.write(line);
+      while((line = readLine()) != null && !isRecordStart(line, 0, line.length))
+        rec.write(line);
+
+      byte[] data = rec.toByteArray();
+      return new Item(docs++, recordPath(name, data), data);
+    }
+
+    @Override
+    public void close() throws IOException { in.close(); }
+
+    /** Reads a line of the stream, with its newline (null at the end) */
+    private byte[] readLine() throws IOException {
+      ByteArrayOutputStream res = new ByteArrayOutputStream();
+      int b;
+      while((b = in.read()) >= 0) {
+        res.write(b);
+        if (b == '\n') { break; }
+      }
+
+      return (res.size() == 0 ? null : res.toByteArray());
+    }
+  }
+
+  /** A stream that's a single plain entry */
+  private static class PlainSource extends CorpusSource {
+    // in is the stream (null once it's been read), and name its path
+    private InputStream in;
+    private String name;
+
+    PlainSource(InputStream in, String name) {
+      this.in = in;
+      this.name = name;
+    }
+
+    @Override
+    public Item next() throws IOException {
+      if (in == null) { return null; }
+
+      byte[] data = in.readAllBytes();
+      in = null;
+      return new Item(0, name, data);
+    }
+  }
+}
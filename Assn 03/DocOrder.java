@@ -0,0 +1,202 @@
+/**
+ * File:    DocOrder.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.0
+ * Description:
+ * DocOrder computes new orders for the documents of a corpus, so that similar
+ * documents get nearby IDs. Postings are stored as gaps between document IDs,
+ * and gaps between similar documents shrink when they're numbered together,
+ * which makes the postings smaller and keeps the documents a query touches
+ * closer together. Three orders are available:
+ * - path: documents are sorted by the path of their corpus entry
+ * - title: documents are sorted by title
+ * - bisect: recursive graph bisection (Dhulipala et al., 2016). The documents
+ *   are split in two, and documents are swapped between the halves while the
+ *   swaps lower the estimated cost of storing the gaps of every term; each
+ *   half is then split again, down to small groups of documents
+ *
+ * An order is an array whose i-th entry is the old ID of the document that's
+ * given ID i.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class DocOrder {
+  // METHODS are the names of the orders, as given on the command line
+  // LEAF is the size of group that bisection stops splitting at
+  // ITERATIONS is the most rounds of swaps made for each split
+  public static final String[] METHODS = {"path", "title", "bisect"};
+  private static final int LEAF = 16, ITERATIONS = 20;
+
+  /**
+   * Orders documents by a key, such as their titles or paths. Documents with
+   * equal keys keep their relative order
+   * @param keys The key of each document, indexed by old ID
+   * @return The new order of the documents
+   */
+  public static int[] byKey(ArrayList<String> keys) {
+    Integer[] order = new Integer[keys.size()];
+    for(int i=0; i<order.length; i++) { order[i] = i; }
+    Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b)));
+
+    int[] res = new int[order.length];
+    for(int i=0; i<res.length; i++) { res[i] = order[i]; }
+    return res;
+  }
+
+  /**
+   * Orders documents by recursive graph bisection over the terms they share.
+   * Terms in only one document are ignored, as their gaps don't change
+   * @param table The tokens whose postings describe the documents
+   * @param docs The number of documents
+   * @return The new order of the documents
+   */
+  public static int[] bisect(TokenTable table, int docs) {
+    // terms is the list of terms of each document, as indexes into the table
+    IntList[] lists = new IntList[docs];
+    for(int d=0; d<docs; d++) { lists[d] = new IntList(); }
+
+    int nTerms = 0;
+    for(Token t : table.tokens()) {
+      if (t.postings.size() > 1) {
+        for(int k=0; k<t.postings.size(); k++)
+          lists[t.postings.doc(k)].add(nTerms);
+        nTerms++;
+      }
+    }
+
+    int[][] terms = new int[docs][];
+    for(int d=0; d<docs; d++) { terms[d] = lists[d].toArray(); }
+    lists = null;
+
+    // order starts as the current order; degA and degB count the documents
+    // containing each term in the two halves of a split
+    // log2 is a table of base-2 logarithms for the cost estimates
+    int[] order = new int[docs];
+    double[] log2 = new double[docs+2];
+    for(int d=0; d<docs; d++) { order[d] = d; }
+    for(int k=1; k<log2.length; k++) { log2[k] = Math.log(k) / Math.log(2); }
+
+    split(order, 0, docs, terms, new int[nTerms], new int[nTerms],
+      new double[docs], new long[docs], log2);
+    return order;
+  }
+
+  /**
+   * Splits the documents order[lo..hi) in two, swapping documents between the
+   * halves to lower the cost of their gaps, and then splits each half
+   */
+  private static void split(int[] order, int lo, int hi, int[][] terms,
+    int[] degA, int[] degB, double[] gain, long[] keys, double[] log2) {
+    if (hi-lo <= LEAF) {
+      Arrays.sort(order, lo, hi);
+      return;
+    }
+
+    int mid = (lo+hi) >>> 1, nA = mid-lo, nB = hi-mid;
+    for(int i=lo; i<mid; i++)
+      for(int t : terms[order[i]]) { degA[t]++; }
+    for(int i=mid; i<hi; i++)
+      for(int t : terms[order[i]]) { degB[t]++; }
+
+    for(int it=0; it<ITERATIONS; it++) {
+      // The gain of moving each document to the other half
+      for(int i=lo; i<hi; i++) {
+        double g = 0;
+        for(int t : terms[order[i]])
+          g += (i < mid ? moveGain(degA[t], nA, degB[t], nB, log2)
+                        : moveGain(degB[t], nB, degA[t], nA, log2));
+        gain[order[i]] = g;
+      }
+
+      // Swap the documents that gain the most from moving, in pairs, while a
+      // pair's combined gain is positive
+      sortByGain(order, lo, mid, gain, keys);
+      sortByGain(order, mid, hi, gain, keys);
+      int swaps = 0;
+      for(int i=0; i<Math.min(nA, nB); i++) {
+        int a = order[lo+i], b = order[mid+i];
+        if (gain[a] + gain[b] <= 0) { break; }
+
+        for(int t : terms[a]) { degA[t]--; degB[t]++; }
+        for(int t : terms[b]) { degB[t]--; degA[t]++; }
+        order[lo+i] = b;
+        order[mid+i] = a;
+        swaps++;
+      }
+
+      if (swaps == 0) { break; }
+    }
+
+    // Reset the degrees before splitting the halves
+    for(int i=lo; i<hi; i++)
+      for(int t : terms[order[i]]) { degA[t] = 0; degB[t] = 0; }
+
+    split(order, lo, mid, terms, degA, degB, gain, keys, log2);
+    split(order, mid, hi, terms, degA, degB, gain, keys, log2);
+  }
+
+  /**
+   * Returns how much the cost of a term drops when one of its documents moves
+   * from one half to the other. A term in d of a half's n documents costs
+   * about d*log2(n/(d+1)) bits of gaps there
+   */
+  private static double moveGain(int dFrom, int nFrom, int dTo, int nTo,
+    double[] log2) {
+    return cost(dFrom, nFrom, log2) + cost(dTo, nTo, log2)
+      - cost(dFrom-1, nFrom, log2) - cost(dTo+1, nTo, log2);
+  }
+
+  /** Returns the estimated cost, in bits, of a term's gaps in a half */
+  private static double cost(int d, int n, double[] log2) {
+    return (d <= 0 ? 0 : d * (log2[n] - log2[d+1]));
+  }
+
+  /**
+   * Sorts order[lo..hi) by descending gain, ties by document. Each document
+   * is packed beside its negated gain (as float bits that sort like ints)
+   * in a long, so a single primitive sort orders both
+   */
+  private static void sortByGain(int[] order, int lo, int hi, double[] gain,
+    long[] keys) {
+    for(int i=lo; i<hi; i++) {
+      int bits = Float.floatToIntBits((float)-gain[order[i]]);
+      bits ^= (bits >> 31) & 0x7FFFFFFF;
+      keys[i] = ((long)bits << 32) | order[i];
+    }
+
+    Arrays.sort(keys, lo, hi);
+    for(int i=lo; i<hi; i++) { order[i] = (int)keys[i]; }
+  }
+
+  /**
+   * Measures the gaps between the document IDs of every token's postings, the
+   * first gap of a list being from -1
+   * @param table The tokens to measure
+   * @return The number of bytes the gaps take as 7-bit variable-length codes,
+   *   the sum of log2 of the gaps (in bits), and the number of gaps
+   */
+  public static double[] gapCost(TokenTable table) {
+    double bytes = 0, bits = 0, gaps = 0;
+
+    for(Token t : table.tokens()) {
+      int prev = -1;
+      for(int k=0; k<t.postings.size(); k++) {
+        int gap = t.postings.doc(k) - prev;
+        prev = t.postings.doc(k);
+
+        bytes += (gap < (1<<7) ? 1 : gap < (1<<14) ? 2 : gap < (1<<21) ? 3 : 4);
+        bits += Math.log(gap) / Math.log(2);
+        gaps++;
+      }
+    }
+
+    return new double[]{ bytes, bits, gaps };
+  }
+}
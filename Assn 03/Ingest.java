@@ -0,0 +1,632 @@
+/**
+ * File:    Ingest.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.2
+ * Description:
+ * Ingest reads the entries of a corpus into the two token tables of the
+ * tiered index as a pipeline of three stages, joined by bounded queues:
+ * - read: a single thread reads each entry into memory from a CorpusSource
+ *   (an entry list, an archive, or standard input)
+ * - tokenize: a pool of workers splits each entry into its title and content,
+ *   preprocesses and stems their words, and groups the positions of each
+ *   stem together, without touching the token tables
+ * - merge: the calling thread adds each tokenized entry to the token tables,
+ *   creating a Token only for stems the table hasn't seen
+ *
+ * A full queue blocks the stage feeding it, so a slow stage holds back the
+ * stages before it instead of letting entries pile up in memory. Entry lists
+ * are read largest first, so a large entry isn't left to finish alone after
+ * every other entry is done. The throughput of each stage and the depth of
+ * each queue are reported every few seconds, and the time each stage spent
+ * busy is reported at the end, which shows whether the build was held back by
+ * reading or by tokenizing.
+ *
+ * Entries reach the merge stage out of order, so once every entry has been
+ * merged, each table is sorted by where its tokens first occur (document,
+ * then position), and the variants of each token are added to its set again
+ * in the order they first occur. The tables are then exactly what reading the
+ * entries one at a time, in order, would have built, down to the order their
+ * variants are saved in.
+ *
+ * Given a Checkpoint, the workers also encode each entry they tokenize as a
+ * record, and the merge stage commits the records of the entries it's merged
+ * as a block of the checkpoint every minute or so (and once every entry has
+ * been merged). A resumed build merges the committed records back into the
+ * tables before the stages start, and the documents they hold aren't read
+ * again. The tables are put in order the same way either way, so a resumed
+ * build saves exactly what an uninterrupted one would have.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ * Version 1.1 (18 October 2026)
+ * - Entries are read from a CorpusSource, so archives and standard input
+ *   stream through the pipeline like entry lists
+ * Version 1.2 (18 October 2026)
+ * - Merged entries are committed to a Checkpoint, from which an interrupted
+ *   build can be resumed
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+class Ingest {
+  // QUEUE is the number of entries each queue holds per worker
+  // REPORT_MS is the time between progress reports
+  // STEM_CACHE is the most words a worker remembers the stems of
+  // CHECKPOINT_MS is the most time between the blocks of a checkpoint, and
+  //   CHECKPOINT_BYTES the most bytes of records a block holds
+  private static final int QUEUE = 2, STEM_CACHE = 1 << 16,
+    CHECKPOINT_BYTES = 1 << 26;
+  private static final long REPORT_MS = 2000, CHECKPOINT_MS = 60000;
+
+  // src is the source of the entries
+  // ck is the checkpoint merged entries are committed to (or null)
+  // done are the documents merged from the checkpoint before the stages
+  //   started, which aren't read again
+  // paths are the paths of the entries read, indexed by document ID
+  // workers is the number of tokenize threads
+  // read, tokenized are the queues between the stages; an entry with no
+  //   data tells the stage taking it that the stage before it is done
+  // files and bytes count the entries and bytes through each stage (read,
+  //   tokenize, merge), and busy the nanoseconds each stage spent working
+  private CorpusSource src;
+  private Checkpoint ck;
+  private DocSet done = new DocSet();
+  private ArrayList<String> paths = new ArrayList<>();
+  private int workers;
+  private BlockingQueue<Entry> read, tokenized;
+  private AtomicLong[] files, bytes, busy;
+
+  /** One entry of the corpus, as it moves through the stages */
+  private static class Entry {
+    // doc is the document ID of the entry, and path its path
+    // data is the content of the entry file (null once it's tokenized)
+    // titles are the titles of the entry, and title and content the words
+    //   of its two tiers
+    // record is the entry encoded for the checkpoint (null if there's none)
+    int doc;
+    String path;
+    byte[] data, record;
+    ArrayList<String> titles = new ArrayList<>();
+    Terms title = new Terms(), content = new Terms();
+
+    Entry(int doc, String path, byte[] data) {
+      this.doc = doc;
+      this.path = path;
+      this.data = data;
+    }
+  }
+
+  /** The words of one tier of an entry, grouped by stem in the order each
+   *  stem first occurs */
+  private static class Terms {
+    // words and ids map each word, and each stem, to the index of its stem
+    // stems, variants, and locs are the stems, their words, and their
+    //   positions, indexed alike; firsts are the first position of each word
+    ObjIntMap<String> words = new ObjIntMap<>(), ids = new ObjIntMap<>();
+    ArrayList<String> stems = new ArrayList<>();
+    ArrayList<ArrayList<String>> variants = new ArrayList<>();
+    ArrayList<IntList> locs = new ArrayList<>(), firsts = new ArrayList<>();
+  }
+
+  /** A record of the checkpoint, being written to or read from a buffer */
+  private static class Record {
+    // buf is the buffer, and len the number of bytes written or read
+    byte[] buf;
+    int len = 0;
+
+    Record(byte[] buf) { this.buf = buf; }
+
+    /** Writes a non-negative int as a varint, seven bits at a time */
+    void putInt(int v) {
+      if (len+5 > buf.length) { buf = Arrays.copyOf(buf, buf.length*2); }
+      while((v & ~0x7F) != 0) {
+        buf[len++] = (byte)((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      buf[len++] = (byte)v;
+    }
+
+    /** Writes a string as its length in UTF-8 bytes, and then the bytes */
+    void putString(String s) {
+      byte[] b = s.getBytes(StandardCharsets.UTF_8);
+      putInt(b.length);
+      if (len+b.length > buf.length)
+        buf = Arrays.copyOf(buf, Math.max(len+b.length, buf.length*2));
+      System.arraycopy(b, 0, buf, len, b.length);
+      len += b.length;
+    }
+
+    /** Reads an int written by putInt */
+    int getInt() {
+      int res = 0, shift = 0, b;
+      do {
+        b = buf[len++];
+        res |= (b & 0x7F) << shift;
+        shift += 7;
+      } while(b < 0);
+      return res;
+    }
+
+    /** Reads a string written by putString */
+    String getString() {
+      int n = getInt();
+      len += n;
+      return new String(buf, len-n, n, StandardCharsets.UTF_8);
+    }
+  }
+
+  private Ingest(CorpusSource src, Checkpoint ck, int workers) {
+    this.src = src;
+    this.ck = ck;
+    this.workers = workers;
+    read = new ArrayBlockingQueue<>(QUEUE*workers);
+    tokenized = new ArrayBlockingQueue<>(QUEUE*workers);
+    files = new AtomicLong[3];
+    bytes = new AtomicLong[3];
+    busy = new AtomicLong[3];
+    for(int s=0; s<3; s++) {
+      files[s] = new AtomicLong();
+      bytes[s] = new AtomicLong();
+      busy[s] = new AtomicLong();
+    }
+  }
+
+  /**
+   * Reads the entries of a corpus into the token tables of the tiered index
+   * @param src The source of the entries
+   * @param title The token table of the title tier
+   * @param content The token table of the content tier
+   * @param ck The checkpoint to resume from and commit entries to, or null
+   *   to build without one
+   * @param workers The number of threads that tokenize entries
+   * @return The titles of the documents and the paths of their entries, in
+   *   order of document ID
+   */
+  public static Duet<ArrayList<String>,ArrayList<String>> run(
+    CorpusSource src, TokenTable title, TokenTable content, Checkpoint ck,
+    int workers) {
+    return new Ingest(src, ck, workers).run(title, content);
+  }
+
+  /** Runs the stages, merging entries on this thread as they're tokenized */
+  private Duet<ArrayList<String>,ArrayList<String>> run(TokenTable title,
+    TokenTable content) {
+    // titles are the titles of each document, until they're put in order
+    // seen is where each word of each tier first occurs, as its document
+    //   and position packed into a long
+    // prev are the counts of each stage at the last report
+    // block holds the records of the entries merged since the last block
+    //   was committed, at the time saved
+    ArrayList<ArrayList<String>> titles = new ArrayList<>();
+    ArrayList<HashMap<String,Long>> seen = new ArrayList<>();
+    seen.add(new HashMap<>());
+    seen.add(new HashMap<>());
+    long[] prev = new long[6];
+    long start = System.nanoTime(), last = start, saved = start;
+    ByteArrayOutputStream block = new ByteArrayOutputStream();
+
+    if (ck != null && ck.blocks() > 0) { resume(title, content, titles, seen); }
+    src.skip(done);
+
+    Thread reader = new Thread(this::readAll, "ingest-read");
+    reader.setDaemon(true);
+    reader.start();
+    for(int w=0; w<workers; w++) {
+      Thread t = new Thread(this::tokenizeAll, "ingest-tokenize-"+w);
+      t.setDaemon(true);
+      t.start();
+    }
+
+    try {
+      // Merge entries until every worker is done
+      for(int done=0; done<workers; ) {
+        Entry e = tokenized.poll(REPORT_MS, TimeUnit.MILLISECONDS);
+
+        if (e != null && e.doc < 0)
+          done++;
+        else if (e != null) {
+          long t0 = System.nanoTime();
+          merge(e.title, e.doc, title, seen.get(0));
+          merge(e.content, e.doc, content, seen.get(1));
+          while(titles.size() <= e.doc) { titles.add(null); }
+          titles.set(e.doc, e.titles);
+          if (ck != null) { block.write(e.record, 0, e.record.length); }
+          busy[2].addAndGet(System.nanoTime()-t0);
+          files[2].incrementAndGet();
+        }
+
+        long now = System.nanoTime();
+        if (now-last >= REPORT_MS*1000000L) {
+          report(now-last, prev);
+          last = now;
+        }
+
+        // Commit the entries merged so far once enough time or records
+        // have built up
+        if (block.size() > 0 && (block.size() >= CHECKPOINT_BYTES ||
+          now-saved >= CHECKPOINT_MS*1000000L)) {
+          ck.addBlock(block.toByteArray(), block.size());
+          block.reset();
+          saved = now;
+        }
+      }
+
+      if (block.size() > 0) { ck.addBlock(block.toByteArray(), block.size()); }
+    }
+    catch(IOException | InterruptedException e) {
+      System.err.println("ERR: Error during corpus processing!");
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+
+    finish(title, seen.get(0));
+    finish(content, seen.get(1));
+    summary(System.nanoTime()-start);
+
+    ArrayList<String> res = new ArrayList<>();
+    for(ArrayList<String> t : titles) { res.addAll(t); }
+    return new Duet<>(res, paths);
+  }
+
+  /** The read stage: reads every entry of the source into the read queue,
+   *  and then an entry with no data for each worker to stop it */
+  private void readAll() {
+    try {
+      while(true) {
+        long t0 = System.nanoTime();
+        CorpusSource.Item it = src.next();
+        busy[0].addAndGet(System.nanoTime()-t0);
+        if (it == null) { break; }
+
+        if (done.contains(it.doc)) { continue; }
+
+        while(paths.size() <= it.doc) { paths.add(null); }
+        paths.set(it.doc, it.path);
+        files[0].incrementAndGet();
+        bytes[0].addAndGet(it.data.length);
+        read.put(new Entry(it.doc, it.path, it.data));
+      }
+
+      for(int w=0; w<workers; w++) { read.put(new Entry(-1, null, null)); }
+    }
+    catch(IOException | InterruptedException e) {
+      System.err.println("ERR: Error during corpus processing!");
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /** The tokenize stage: tokenizes entries from the read queue into the
+   *  tokenized queue until it's told to stop, and then tells the merge
+   *  stage it's done */
+  private void tokenizeAll() {
+    // stems remembers the stems of the words this worker has seen
+    HashMap<String,String> stems = new HashMap<>();
+
+    try {
+      Entry e;
+      while((e = read.take()).data != null) {
+        long t0 = System.nanoTime();
+        int len = e.data.length;
+        tokenize(e, stems);
+        if (ck != null) { e.record = encode(e); }
+        busy[1].addAndGet(System.nanoTime()-t0);
+        files[1].incrementAndGet();
+        bytes[1].addAndGet(len);
+        tokenized.put(e);
+      }
+
+      tokenized.put(e);
+    }
+    catch(IOException | InterruptedException | RuntimeException e) {
+      System.err.println("ERR: Error during corpus processing!");
+      System.err.println(e);
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Splits an entry into its title and content, and groups the words of each
+   * (see Corpus.corpusProcess for the format of an entry)
+   * @param e The entry, whose data is released once it's tokenized
+   * @param stems The stems of the words the worker has seen
+   */
+  private static void tokenize(Entry e, HashMap<String,String> stems)
+    throws IOException {
+    BufferedReader r = new BufferedReader(new StringReader(
+      new String(e.data, Charset.defaultCharset())));
+    String line;
+    int docLoc = 1;
+    e.data = null;
+
+    while((line = r.readLine()) != null) {
+      switch(line) {
+        case ".T":
+          String title = Corpus.readSegment(r, ".A");
+          addLine(e.title, title, 0, stems);
+          e.titles.add(title.trim().replace(".",""));
+          break;
+        case ".A":
+        case ".B":
+          break;
+        case ".W":
+          while((line = r.readLine()) != null)
+            docLoc = addLine(e.content, line, docLoc, stems);
+          break;
+      }
+    }
+  }
+
+  /**
+   * Preprocesses a line of text and adds each of its words to a tier
+   * @param terms The words of the tier
+   * @param line The line of text
+   * @param loc The position of the line's first word in the document
+   * @param stems The stems of the words the worker has seen
+   * @return The position after the line's last word
+   */
+  private static int addLine(Terms terms, String line, int loc,
+    HashMap<String,String> stems) {
+    for(String word : Corpus.preProcessLine(line).split(" ")) {
+      if (word.equals("")) { continue; }
+
+      // Words are stemmed once per tier; each new word is added as a
+      // variant of its stem
+      int i = terms.words.get(word);
+      if (i < 0) {
+        String stem = stems.get(word);
+        if (stem == null) {
+          if (stems.size() >= STEM_CACHE) { stems.clear(); }
+          stem = Token.stemToken(word);
+          stems.put(word, stem);
+        }
+
+        i = terms.ids.putIfAbsent(stem, terms.stems.size());
+        if (i < 0) {
+          i = terms.stems.size();
+          terms.stems.add(stem);
+          terms.variants.add(new ArrayList<>());
+          terms.locs.add(new IntList());
+          terms.firsts.add(new IntList());
+        }
+
+        terms.words.put(word, i);
+        terms.variants.get(i).add(word);
+        terms.firsts.get(i).add(loc);
+      }
+
+      terms.locs.get(i).add(loc++);
+    }
+
+    return loc;
+  }
+
+  /**
+   * The merge stage: adds the words of a tier of an entry to a token table
+   * @param terms The words of the tier
+   * @param doc The document ID of the entry
+   * @param table The token table of the tier
+   * @param seen Where each word of the tier first occurs
+   */
+  private static void merge(Terms terms, int doc, TokenTable table,
+    HashMap<String,Long> seen) {
+    for(int i=0; i<terms.stems.size(); i++) {
+      ArrayList<String> vars = terms.variants.get(i);
+      Token t = table.get(terms.stems.get(i));
+      if (t == null) {
+        t = new Token(vars.get(0), terms.stems.get(i));
+        table.putIfAbsent(t);
+      }
+
+      // A word that's been seen before is already a variant of the token
+      for(int k=0; k<vars.size(); k++) {
+        long at = ((long)doc << 32) | terms.firsts.get(i).get(k);
+        Long prev = seen.get(vars.get(k));
+        if (prev == null) { t.variants.add(vars.get(k)); }
+        if (prev == null || at < prev) { seen.put(vars.get(k), at); }
+      }
+
+      IntList locs = terms.locs.get(i);
+      for(int k=0; k<locs.size(); k++) { t.postings.add(doc, locs.get(k)); }
+    }
+  }
+
+  /**
+   * Merges the entries committed to the checkpoint by an earlier run, and
+   * notes their documents as done
+   * @param title The token table of the title tier
+   * @param content The token table of the content tier
+   * @param titles The titles of each document
+   * @param seen Where each word of each tier first occurs
+   */
+  private void resume(TokenTable title, TokenTable content,
+    ArrayList<ArrayList<String>> titles, ArrayList<HashMap<String,Long>> seen) {
+    long t0 = System.nanoTime();
+
+    try {
+      for(int b=0; b<ck.blocks(); b++) {
+        Record in = new Record(ck.block(b));
+        while(in.len < in.buf.length) {
+          Entry e = decode(in);
+          merge(e.title, e.doc, title, seen.get(0));
+          merge(e.content, e.doc, content, seen.get(1));
+          while(titles.size() <= e.doc) { titles.add(null); }
+          titles.set(e.doc, e.titles);
+          while(paths.size() <= e.doc) { paths.add(null); }
+          paths.set(e.doc, e.path);
+          done.add(e.doc);
+        }
+      }
+    }
+    catch(IOException e) {
+      System.err.println("ERR: Error reading the checkpoint!");
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+
+    System.out.printf("  Resumed %,d files from %d checkpoint block%s in "+
+      "%.2fs\n", done.cardinality(), ck.blocks(),
+      (ck.blocks() == 1 ? "" : "s"), (System.nanoTime()-t0)/1e9);
+  }
+
+  /**
+   * Encodes a tokenized entry as a record of the checkpoint: its document ID,
+   * path, and titles, and then the stems of each tier, each with its
+   * variants (and where they first occur) and its positions. Numbers are
+   * written as varints, and strings as their UTF-8 length and bytes
+   * @param e The entry
+   * @return The record
+   */
+  private static byte[] encode(Entry e) {
+    Record out = new Record(new byte[256]);
+
+    out.putInt(e.doc);
+    out.putString(e.path);
+    out.putInt(e.titles.size());
+    for(String t : e.titles) { out.putString(t); }
+
+    for(Terms terms : new Terms[]{e.title, e.content}) {
+      out.putInt(terms.stems.size());
+      for(int i=0; i<terms.stems.size(); i++) {
+        out.putString(terms.stems.get(i));
+
+        ArrayList<String> vars = terms.variants.get(i);
+        out.putInt(vars.size());
+        for(int k=0; k<vars.size(); k++) {
+          out.putString(vars.get(k));
+          out.putInt(terms.firsts.get(i).get(k));
+        }
+
+        IntList locs = terms.locs.get(i);
+        out.putInt(locs.size());
+        for(int k=0; k<locs.size(); k++) { out.putInt(locs.get(k)); }
+      }
+    }
+
+    return Arrays.copyOf(out.buf, out.len);
+  }
+
+  /** Decodes the next record of a block of the checkpoint (see encode) */
+  private static Entry decode(Record in) {
+    Entry e = new Entry(in.getInt(), in.getString(), null);
+    for(int n=in.getInt(); n>0; n--) { e.titles.add(in.getString()); }
+
+    for(Terms terms : new Terms[]{e.title, e.content}) {
+      for(int n=in.getInt(); n>0; n--) {
+        terms.stems.add(in.getString());
+
+        ArrayList<String> vars = new ArrayList<>();
+        IntList firsts = new IntList();
+        for(int k=in.getInt(); k>0; k--) {
+          vars.add(in.getString());
+          firsts.add(in.getInt());
+        }
+
+        IntList locs = new IntList();
+        for(int k=in.getInt(); k>0; k--) { locs.add(in.getInt()); }
+
+        terms.variants.add(vars);
+        terms.firsts.add(firsts);
+        terms.locs.add(locs);
+      }
+    }
+
+    return e;
+  }
+
+  /**
+   * Puts a token table in the order a sequential read of the corpus would
+   * have built it: its tokens by where they first occur, and the variants
+   * of each token by where they first occur, as a HashSet's iteration order
+   * depends on the order its elements were added in
+   * @param table The token table of a tier
+   * @param seen Where each word of the tier first occurs
+   */
+  private static void finish(TokenTable table, HashMap<String,Long> seen) {
+    table.sort(Ingest::firstSeen);
+
+    for(Token t : table.tokens()) {
+      if (t.variants.size() < 2) { continue; }
+
+      ArrayList<String> vars = new ArrayList<>(t.variants);
+      vars.sort((a, b) -> Long.compare(seen.get(a), seen.get(b)));
+      t.variants = new HashSet<>();
+      t.variants.addAll(vars);
+    }
+  }
+
+  /** Orders tokens by where they first occur: the lowest document they're
+   *  in, and then their first position in it */
+  private static int firstSeen(Token a, Token b) {
+    int c = Integer.compare(a.postings.doc(0), b.postings.doc(0));
+    return (c != 0 ? c : Integer.compare(a.postings.positions(0, null)[0],
+      b.postings.positions(0, null)[0]));
+  }
+
+  /**
+   * Prints the throughput of each stage since the last report, and the depth
+   * of each queue
+   * @param nanos The time since the last report
+   * @param prev The file and byte counts of each stage at the last report
+   */
+  private void report(long nanos, long[] prev) {
+    double secs = nanos/1e9;
+    long[] cur = new long[6];
+    for(int s=0; s<3; s++) {
+      cur[2*s] = files[s].get();
+      cur[2*s+1] = (s == 2 ? 0 : bytes[s].get());
+    }
+
+    if (src.size() > 0)
+      System.out.printf("%8d files merged (%.0f%% of the corpus read)\n",
+        cur[4], 100.0*src.consumed()/src.size());
+    else
+      System.out.printf("%8d files merged (%.1f MB of the corpus read)\n",
+        cur[4], src.consumed()/1e6);
+    System.out.printf("  read %,.0f files/s (%.1f MB/s), queue %d/%d | "+
+      "tokenize %,.0f files/s (%.1f MB/s), queue %d/%d | merge %,.0f files/s\n",
+      (cur[0]-prev[0])/secs, (cur[1]-prev[1])/secs/1e6,
+      read.size(), QUEUE*workers, (cur[2]-prev[2])/secs,
+      (cur[3]-prev[3])/secs/1e6, tokenized.size(), QUEUE*workers,
+      (cur[4]-prev[4])/secs);
+    System.arraycopy(cur, 0, prev, 0, 6);
+  }
+
+  /**
+   * Prints how long each stage was busy over the whole build, and which one
+   * held the build back (the busiest, per thread)
+   * @param nanos The time the build took
+   */
+  private void summary(long nanos) {
+    String[] names = {"reading", "tokenizing", "merging"};
+    int[] threads = {1, workers, 1};
+    double[] load = new double[3];
+    int worst = 0;
+    for(int s=0; s<3; s++) {
+      load[s] = busy[s].get() / (1.0*nanos*threads[s]);
+      if (load[s] > load[worst]) { worst = s; }
+    }
+
+    System.out.printf("  %,d files (%.1f MB) in %.2fs: reading busy %.2fs, "+
+      "tokenizing busy %.2fs on %d thread%s, merging busy %.2fs\n",
+      files[0].get(), bytes[0].get()/1e6, nanos/1e9, busy[0].get()/1e9,
+      busy[1].get()/1e9, workers, (workers == 1 ? "" : "s"), busy[2].get()/1e9);
+    System.out.printf("  The build was bound by %s (%.0f%% busy)\n",
+      names[worst], 100.0*load[worst]);
+  }
+}
@@ -2,19 +2,24 @@
  * File:    Model.java
  * Author:  Matthew Morgan
  * Date:    28 March 2018
- * Version: 2.0
+ * Version: 3.5
  * Description:
  * Model is a representation of a vector space model. Every document vector in
  * the model is represented by a Duet that contains two values:
  * - a boolean specifying whether the vector has been normalized
- * - a hashtable of components, where tokens are keys and weights are doubles
+ * - a WeightVector of components, where terms are keyed by an integer ID
+ *   assigned by the model, and weights are stored at the model's precision
  * 
  * The format of a vector space model file is as follows:
  * -----------------------------------------------------------------------------
- * <DOC CNT>
- * <ID> <NORMALIZED> <COMP CNT> <COMP> <WEIGHT> <COMP> <WEIGHT> ...
+ * <DOC CNT> [<PREC> [<SCALING>] [<TERM CNT> <TERM> <SCALE> ...]]
+ * <ID> <NORMALIZED> <COMP CNT> [<SCALE>] <COMP> <WEIGHT> <COMP> <WEIGHT> ...
  * ...
  * -----------------------------------------------------------------------------
+ * The precision is omitted for double-precision models, so files written
+ * before version 3.0 load as they always have. For 8-bit precisions, SCALING
+ * is either 'doc' (each vector line carries its SCALE) or 'term' (the header
+ * lists the scale of every term), and each WEIGHT is an integer code.
  * 
  * ~~~ VERSION HISTORY ~~~
  * Version 1.0 (22 February 2018)
@@ -24,25 +29,101 @@
  * - Vectors are no longer represented by a class, but by a Hashtable of doubles
  *   and a boolean for normalization status
  * 
+ * Version 3.0 (18 October 2026)
+ * - Vectors are stored as WeightVectors over term IDs instead of Hashtables
+ *   of boxed doubles
+ * - Weights can be stored as floats, or as 8-bit linear or log codes with
+ *   per-document or per-term scales; cosine similarity is computed directly
+ *   on the stored values
+ * Version 3.1 (18 October 2026)
+ * - Batches of documents are scored as dense blocks over the query's terms,
+ *   using the Vector API (see VectorKernel.java) when it's available
+ * Version 3.2 (18 October 2026)
+ * - The model and its term dictionary are an IntObjMap and ObjIntMap instead
+ *   of Hashtables, and vectors are saved in order of document ID
+ * - Vector lines are parsed concurrently when a model is loaded, with term
+ *   IDs assigned exactly as a line-by-line load would
+ * Version 3.3 (18 October 2026)
+ * - The documents holding each term are kept as a DocSet (see ../Common),
+ *   built when first needed, so the candidates of a query are the union of
+ *   its terms' sets rather than every document
+ * Version 3.4 (18 October 2026)
+ * - Batches of queries are ranked together: the documents and weights of
+ *   each term the batch needs are gathered in one pass over the vectors,
+ *   and each term's list is scanned once for all the queries that have it
+ * - Components are removed through the model with retain, so its DocSets
+ *   are rebuilt afterwards
+ * Version 3.5 (19 October 2026)
+ * - Only the DOC CNT vector lines after the header are parsed on load, so
+ *   title models with their titles appended after the vectors load again
+ * - A header with an unknown precision or scaling is rejected on load
+ * - The DocSets of the terms are an index beside the vectors, not a way of
+ *   storing them; the memory they add is reported by docSetBytes
+ * - retain returns the number of components left, as documented, rather
+ *   than the number dropped
+ * - Batches of queries walk each term's DocSet for its documents, rather
+ *   than copying them into a list of their own
+ * 
  * ~~~ BUCKETLIST ~~~
  * - Perform overwrite confirmation if VSM files already exist
  */
 
+
 // Import statements
 import java.util.Hashtable;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Arrays;
 import java.io.File;
 import java.io.IOException;
 import java.io.FileWriter;
-import java.io.FileReader;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
 
 public class Model {
-  // model is the vsm; each Duet represents a single document vector
-  private Hashtable<Integer,Duet<Boolean,Hashtable<String,Double>>> model;
+  // PREC_* are the precisions the weights of a model can be stored at
+  // PREC_NAMES are the names of the precisions, as given on the command line
+  //   and written in vsm files
+  public static final byte PREC_DOUBLE = 0, PREC_FLOAT = 1, PREC_LIN8 = 2,
+    PREC_LOG8 = 3;
+  public static final String[] PREC_NAMES = {"double","float","lin8","log8"};
+
+  // BLOCK is the number of candidate vectors gathered into one dense block
+  //   when scoring a batch of documents
+  // SIMD specifies whether blocks are scored with the Vector API; it can only
+  //   be true if the jdk.incubator.vector module is available
+  // ACCUMULATORS is the most similarities (queries times documents) that are
+  //   accumulated at once when ranking a batch of queries
+  private static final int BLOCK = 1024, ACCUMULATORS = 1 << 22;
+  public static boolean SIMD = simdAvailable();
 
-  public Model() { model = new Hashtable<>(); }
+  // model is the vsm; each Duet represents a single document vector
+  // termIds maps each term to the ID its components are stored under
+  // terms is the list of terms, indexed by ID
+  // precision is the precision the weights of the model are stored at
+  // termScales are the per-term scales of 8-bit weights (null if unused)
+  // docSets are the documents whose vectors have each term, indexed by term
+  //   ID (null until they're needed, and whenever a vector changes); they're
+  //   the only list of each term's documents that queries use (for their
+  //   candidates, document frequencies, and the terms a batch scans), but an
+  //   index beside the vectors, which still hold every component
+  private IntObjMap<Duet<Boolean,WeightVector>> model;
+  private ObjIntMap<String> termIds;
+  private ArrayList<String> terms;
+  private byte precision;
+  private float[] termScales;
+  private DocSet[] docSets;
+
+  public Model() {
+    model = new IntObjMap<>();
+    termIds = new ObjIntMap<>();
+    terms = new ArrayList<>();
+    precision = PREC_DOUBLE;
+    termScales = null;
+    docSets = null;
+  }
 
   /**
    * Returns the size - that is, the number of document vectors - in the model
@@ -50,13 +131,26 @@ public class Model {
    */
   public int size() { return model.size(); }
 
+  /** Returns the number of terms the model has given IDs to */
+  public int termCount() { return terms.size(); }
+
+  /** Returns the precision the weights of the model are stored at */
+  public byte getPrecision() { return precision; }
+
+  /** Returns a description of the precision of the model, such as 'lin8
+   *  (term scales)' */
+  public String describePrecision() {
+    return PREC_NAMES[precision] + (precision < PREC_LIN8 ? "" :
+      (termScales == null ? " (doc scales)" : " (term scales)"));
+  }
+
   /**
    * Attempts to retrieve a document vector from the model. If it doesn't exist,
    * then an error is printed to the screen
    * @param id The ID of the document to fetch from the model
    * @return The document vector corresponding to the ID given, if it exists
    */
-  public Hashtable<String,Double> getDoc(int id) {
+  public WeightVector getDoc(int id) {
     if (!model.containsKey(id)) {
       System.err.println("ERR: The vsm doesn't contain a vector for doc "+id);
       System.exit(1);
@@ -65,6 +159,22 @@ public class Model {
     return model.get(id).dataB;
   }
 
+  /**
+   * Returns the ID the model stores a term's components under
+   * @param term The term to look up
+   * @return The ID of the term, or -1 if no vector in the model has it
+   */
+  public int termId(String term) {
+    return termIds.get(term);
+  }
+
+  /**
+   * Returns the term stored under an ID
+   * @param id The ID of the term
+   * @return The term
+   */
+  public String term(int id) { return terms.get(id); }
+
   /**
    * Gets the value of a component, in a document vector, in the model. An error
    * is displayed if the document vector for 'id' doesn't have the component
@@ -73,29 +183,32 @@ public class Model {
    * @param component The component to get the value of
    */
   public double getDocComponent(int id, String component) {
-    Double val = getDoc(id).get(component);
+    WeightVector doc = getDoc(id);
+    int i = doc.find(termId(component));
     
-    if (val == null) {
+    if (i < 0) {
       System.err.printf("ERR: The vsm doesn't contain component '%s' for the "+
         "doc '%d'\n", component, id);
       System.exit(1);
     }
 
-    return val.doubleValue();
+    return doc.weight(i);
   }
 
   /**
    * Sets a component of the specified document vector to the value given, or
-   * removes it if the value to set it to is 0
+   * removes it if the value to set it to is 0. A compressed vector is decoded
+   * to double precision by this, until the model is next normalized
    * @param id The ID of the document that contains the component
    * @param component The component - that is, the token - to set the value of
    * @param value The value to set the component as
    */
   public void setDocComponent(int id, String component, double value) {
+    docSets = null;
     if (value == 0.0)
-      getDoc(id).remove(component);
+      getDoc(id).remove(termId(component));
     else
-      getDoc(id).put(component, value);
+      getDoc(id).put(termIdAdd(component), value);
   }
 
   /**
@@ -104,31 +217,87 @@ public class Model {
    * @param id The ID of the document, as an integer, to be added to the vsm
    * @return A reference to the document vector stored
    */
-  public Duet<Boolean,Hashtable<String,Double>> addDoc(int id) {
+  public Duet<Boolean,WeightVector> addDoc(int id) {
     if (model.containsKey(id)) {
       System.err.println("ERR: The vsm already has a vector for doc "+id);
       System.exit(1);
     }
 
-    model.put(id, new Duet<>(false, new Hashtable<>()));
+    docSets = null;
+    model.put(id, new Duet<>(false, new WeightVector()));
     return model.get(id);
   }
 
+  /**
+   * Removes components from a document vector
+   * @param id The ID of the document vector
+   * @param keep Whether to keep each component, in the vector's order
+   * @return The number of components left
+   */
+  public int retain(int id, boolean[] keep) {
+    docSets = null;
+    getDoc(id).retain(keep);
+    return getDoc(id).size();
+  }
+
   /**
    * Removes a document vector from the vsm
    * @param id The ID of the document vector to be removed
    */
-  public void delDoc(int id) { model.remove(id); }
+  public void delDoc(int id) { model.remove(id); docSets = null; }
 
-  /** Normalizes any document vectors in the vsm that haven't been already */
+  /** Normalizes any document vectors in the vsm that haven't been already,
+   *  and stores them at the model's precision afterwards */
   public void normalize() {
-    for(Duet<Boolean,Hashtable<String,Double>> duet : Collections.list(model.elements())) {
+    boolean changed = false;
+    docSets = null;
+
+    for(Duet<Boolean,WeightVector> duet : model.values()) {
       if (!duet.dataA) {
         // Flag that this vector has been normalized
         duet.dataA = true;
-        normalize(duet.dataB);
+        duet.dataB.normalize();
+        changed = true;
+      }
+    }
+
+    if (changed && precision != PREC_DOUBLE)
+      setPrecision(precision, termScales != null);
+  }
+
+  /**
+   * Re-encodes every vector of the model at the given precision
+   * @param prec The precision to store weights at (one of PREC_*)
+   * @param perTerm For 8-bit precisions, whether weights are scaled per term
+   *   (true) or per document vector (false)
+   */
+  public void setPrecision(byte prec, boolean perTerm) {
+    float[] scales = null;
+
+    // Per-term scales are the largest weight each term has in any vector
+    if (perTerm && prec >= PREC_LIN8) {
+      scales = new float[terms.size()];
+      for(Duet<Boolean,WeightVector> duet : model.values()) {
+        WeightVector v = duet.dataB;
+        for(int i=0; i<v.size(); i++)
+          scales[v.id(i)] = (float)Math.max(scales[v.id(i)], v.weight(i));
       }
     }
+
+    for(Duet<Boolean,WeightVector> duet : model.values())
+      duet.dataB.encode(prec, scales);
+
+    precision = prec;
+    termScales = scales;
+  }
+
+  /** Returns the number of bytes used by the weights of all the vectors in
+   *  the model, including any per-term scales */
+  public long weightBytes() {
+    long bytes = (termScales == null ? 0 : 4L*termScales.length);
+    for(Duet<Boolean,WeightVector> duet : model.values())
+      bytes += duet.dataB.weightBytes();
+    return bytes;
   }
 
   /**
@@ -137,45 +306,143 @@ public class Model {
    * @param cpl The number of components to print, per line
    */
   public void printVector(int id, int cpl) {
-    Hashtable<String,Double> vector = getDoc(id);
+    WeightVector vector = getDoc(id);
+    int cplCur = 0;
 
     System.out.printf("Vector %d: %d components, %s\n", id, vector.size(),
       (model.get(id).dataA ? "normalized" : "not normalized"));
 
-    printVector(vector, cpl);
+    for(int i=0; i<vector.size(); i++) {
+      System.out.printf("%20s : %-10f ", terms.get(vector.id(i)),
+        vector.weight(i));
+      cplCur++;
+      if (cplCur == cpl) { System.out.print("\n"); cplCur = 0; }
+    }
+
+    // Print a linebreak if one hasn't already been printed for the line
+    if (cplCur < cpl) { System.out.println(); }
   }
 
   /**
-   * Attempts to load a prior-saved vector space model from the disk
+   * Attempts to load a prior-saved vector space model from the disk. After
+   * the header, the DOC CNT vector lines are parsed concurrently (see
+   * ParallelLoader.java), each range of lines with its own term IDs; the
+   * ranges are then merged in file order, so terms are given the same IDs
+   * as if the file had been read line by line
    * @param loc The filename that should contain the vector space model
    */
   public void load(String loc) {
+    docSets = null;
     try {
-      BufferedReader r = new BufferedReader(new FileReader(verify(loc, true)));
-
-      // For every document contained in the vector space model...
-      for(int i=Integer.parseInt(r.readLine()); i>0; i--) {
-        String[] line = r.readLine().split(" ");
-        Duet<Boolean,Hashtable<String,Double>> doc =
-          this.addDoc(Integer.parseInt(line[0]));
-
-        // Normalization status
-        doc.dataA = Boolean.parseBoolean(line[1]);
-        
-        // For every component in the document vector, add the component back to
-        // the document vector
-        for(int k=Integer.parseInt(line[2])-1; k>=0; k--)
-          doc.dataB.put(line[3+(2*k)], Double.parseDouble(line[4+(2*k)]));
+      FileChannel ch = FileChannel.open(verify(loc, true).toPath(),
+        StandardOpenOption.READ);
+
+      // The header holds the document count, and for compressed models, the
+      // precision, scaling, and any per-term scales
+      ArrayList<String> lines = new ArrayList<>();
+      long start = ParallelLoader.readLines(ch, 0, 1, lines);
+      String[] head = lines.get(0).split(" ");
+      precision = (head.length > 1 ? parsePrecision(head[1]) : PREC_DOUBLE);
+      if (precision < 0 || (precision >= PREC_LIN8 && (head.length < 3 ||
+        !(head[2].equals("doc") || head[2].equals("term"))))) {
+        System.err.println("ERR: Unrecognized precision or scaling in the "+
+          "header of vsm file "+loc+": "+lines.get(0));
+        System.exit(1);
+      }
+      termScales = null;
+      if (head.length > 2 && head[2].equals("term")) {
+        termScales = new float[Integer.parseInt(head[3])];
+        for(int k=0; k<termScales.length; k++)
+          termScales[termIdAdd(head[4+(2*k)])] = Float.parseFloat(head[5+(2*k)]);
       }
 
-      r.close();
+      // The vectors are the DOC CNT lines after the header; anything after
+      // them (the titles of older title models) is left to the caller
+      long end = ParallelLoader.skipLines(ch, start, Integer.parseInt(head[0]));
+
+      // Parse the vectors of every range, and then give the terms of each
+      // range their IDs in the model, in file order
+      ArrayList<LoadChunk> chunks = ParallelLoader.parse(ch,
+        ParallelLoader.split(ch, start, end), this::loadChunk);
+      ch.close();
+
+      ArrayList<Callable<Void>> relabel = new ArrayList<>();
+      for(LoadChunk c : chunks) {
+        int[] map = new int[c.terms.size()];
+        for(int k=0; k<map.length; k++)
+          map[k] = termIdAdd(c.terms.get(k));
+
+        relabel.add(() -> {
+          for(Duet<Boolean,WeightVector> doc : c.vecs)
+            doc.dataB.relabel(map);
+          return null;
+        });
+      }
+      ParallelLoader.run(relabel);
+
+      // Add the document vectors to the model
+      for(LoadChunk c : chunks)
+        for(int k=0; k<c.docs.size(); k++) {
+          if (model.containsKey(c.docs.get(k))) {
+            System.err.println("ERR: The vsm already has a vector for doc "+
+              c.docs.get(k));
+            System.exit(1);
+          }
+          model.put(c.docs.get(k), c.vecs.get(k));
+        }
     }
-    catch(IOException e) {
+    catch(IOException | NumberFormatException e) {
       System.err.println(e.getMessage());
       System.exit(1);
     }
   }
 
+  /**
+   * Parses the vector lines in one range of a vsm file. Terms are given IDs
+   * local to the range, which load maps to the model's IDs afterwards
+   * @param in The records of the range
+   * @return The vectors of the range, and the terms their local IDs refer to
+   */
+  private LoadChunk loadChunk(RecordReader in) throws IOException {
+    LoadChunk res = new LoadChunk();
+    boolean docScaled = (precision >= PREC_LIN8 && termScales == null);
+
+    // For every document vector in the range...
+    while(in.peek() != null) {
+      res.docs.add(in.number());
+
+      // Normalization status, component count, and scale
+      boolean norm = Boolean.parseBoolean(in.word());
+      int cnt = in.number();
+      WeightVector vec = new WeightVector(cnt);
+      vec.setStorage(precision,
+        (docScaled ? Double.parseDouble(in.word()) : 1.0), termScales);
+
+      // For every component in the document vector, add the component back to
+      // the document vector, as it was stored
+      for(int k=0; k<cnt; k++) {
+        String term = in.word();
+        int id = res.ids.putIfAbsent(term, res.terms.size());
+        if (id < 0) { id = res.terms.size(); res.terms.add(term); }
+        vec.append(id, Double.parseDouble(in.word()));
+      }
+
+      res.vecs.add(new Duet<>(norm, vec));
+    }
+
+    return res;
+  }
+
+  /** The vectors parsed from one range of a vsm file, over local term IDs */
+  private static class LoadChunk {
+    // docs are the document IDs of the vectors, and vecs the vectors
+    // ids and terms map the terms of the range to and from their local IDs
+    IntList docs = new IntList();
+    ArrayList<Duet<Boolean,WeightVector>> vecs = new ArrayList<>();
+    ObjIntMap<String> ids = new ObjIntMap<>();
+    ArrayList<String> terms = new ArrayList<>();
+  }
+
   /**
    * Attempts to save the vector space model to the disk in the file specified
    * by 'loc,' or throws an error if one occurs.
@@ -184,20 +451,36 @@ public class Model {
   public void save(String loc) {
     try {
       BufferedWriter w = new BufferedWriter(new FileWriter(verify(loc, false)));
-
-      // Number of document vectors
-      w.write(model.size()+"\n");
+      boolean docScaled = (precision >= PREC_LIN8 && termScales == null);
+
+      // Number of document vectors, followed by the precision and scaling of
+      // compressed models
+      w.write(Integer.toString(model.size()));
+      if (precision != PREC_DOUBLE)
+        w.write(" "+PREC_NAMES[precision]);
+      if (precision >= PREC_LIN8)
+        w.write(docScaled ? " doc" : " term");
+      if (termScales != null) {
+        w.write(" "+termScales.length);
+        for(int k=0; k<termScales.length; k++)
+          w.write(" "+terms.get(k)+" "+termScales[k]);
+      }
+      w.write("\n");
 
       // For every document vector in the model, write its data
-      for(int key : Collections.list(model.keys())) {
-        Duet<Boolean,Hashtable<String,Double>> doc = model.get(key);
+      int[] keys = model.keys();
+      Arrays.sort(keys);
+      for(int key : keys) {
+        Duet<Boolean,WeightVector> doc = model.get(key);
 
-        // Vector ID, normalization status, and component count
+        // Vector ID, normalization status, component count, and scale
         w.write(key+" "+doc.dataA+" "+doc.dataB.size()+" ");
+        if (docScaled)
+          w.write(doc.dataB.getScale()+" ");
 
         // For every component in the vector, write the component and its weight
-        for(String docKey : Collections.list(doc.dataB.keys()))
-          w.write(docKey+" "+doc.dataB.get(docKey)+" ");
+        for(int i=0; i<doc.dataB.size(); i++)
+          w.write(terms.get(doc.dataB.id(i))+" "+doc.dataB.stored(i)+" ");
         
         w.write("\n");
       }
@@ -228,21 +511,328 @@ public class Model {
     return f;
   }
 
+  /**
+   * Returns the ID of a term, assigning it the next available ID if it
+   * doesn't have one yet
+   * @param term The term to look up
+   * @return The ID of the term
+   */
+  private int termIdAdd(String term) {
+    int id = termIds.putIfAbsent(term, terms.size());
+    if (id < 0) { terms.add(term); return terms.size()-1; }
+    return id;
+  }
+
+  /**
+   * Converts a query vector into a vector over the terms of this model. Terms
+   * that no document vector has are dropped, as they can't add to similarity
+   * @param query The query vector, keyed by term
+   * @return A double-precision WeightVector for use with cosineSim
+   */
+  public WeightVector queryVector(Hashtable<String,Double> query) {
+    WeightVector res = new WeightVector(query.size());
+
+    for(String c : Collections.list(query.keys())) {
+      int id = termId(c);
+      if (id >= 0) { res.append(id, query.get(c)); }
+    }
+
+    res.sort();
+    return res;
+  }
+
+  /**
+   * Returns the documents whose vectors share a term with a query; every
+   * other document has a similarity of 0 with it
+   * @param query The query vector, from queryVector(...)
+   * @return The IDs of the documents, in ascending order
+   */
+  public int[] candidates(WeightVector query) {
+    if (docSets == null) { buildDocSets(); }
+
+    DocSet res = new DocSet();
+    for(int j=0; j<query.size(); j++)
+      res = DocSet.or(res, docSets[query.id(j)]);
+    return res.toArray();
+  }
+
+  /**
+   * Returns the number of documents whose vectors have a term
+   * @param id The ID of the term
+   * @return The number of documents
+   */
+  public int docFrequency(int id) {
+    if (docSets == null) { buildDocSets(); }
+    return docSets[id].cardinality();
+  }
+
+  /**
+   * Returns the number of bytes the DocSets of every term add to the model,
+   * on top of its vectors
+   * @return The number of bytes, or 0 if the DocSets haven't been built
+   */
+  public long docSetBytes() {
+    if (docSets == null) { return 0; }
+
+    long res = 0;
+    for(DocSet s : docSets) { res += s.bytes(); }
+    return res;
+  }
+
+  /** Builds the DocSet of every term from the document vectors */
+  private void buildDocSets() {
+    DocSet[] sets = new DocSet[terms.size()];
+    for(int t=0; t<sets.length; t++) { sets[t] = new DocSet(); }
+
+    // Documents are visited in ascending order, so each ID is appended
+    int[] keys = model.keys();
+    Arrays.sort(keys);
+    for(int key : keys) {
+      WeightVector v = model.get(key).dataB;
+      for(int i=0; i<v.size(); i++) { sets[v.id(i)].add(key); }
+    }
+
+    for(DocSet s : sets) { s.trim(); }
+    docSets = sets;
+  }
+
   /**
    * Computes the cosine similarity of a document vector with a query vector.
    * Both of these vectors should be normalized prior to this computation
-   * @param doc The document vector to compare with the query
-   * @param query The query vector to compare against the document
+   * @param id The ID of the document vector to compare with the query
+   * @param query The query vector, from queryVector(...), to compare against
    * @return The similarity between the two vectors
    */
-  public static double cosineSim(Hashtable<String,Double> doc,
-    Hashtable<String,Double> query) {
-    double res = 0.0;
-    for(String c : Collections.list(query.keys()))
-      res += (doc.containsKey(c) ? doc.get(c) : 0.0) * query.get(c);
+  public double cosineSim(int id, WeightVector query) {
+    return getDoc(id).dot(query);
+  }
+
+  /**
+   * Computes the cosine similarity of a batch of document vectors with a query
+   * vector. Candidates are gathered, BLOCK at a time, into a dense block over
+   * the query's terms, which is scored with SIMD instructions if available.
+   * The results are identical to calling cosineSim(id, query) for each
+   * @param ids The IDs of the document vectors to compare with the query
+   * @param query The query vector, from queryVector(...), to compare against
+   * @return The similarity of each document, in the order of the IDs given
+   */
+  public double[] cosineSim(int[] ids, WeightVector query) {
+    // terms is the number of query terms, or rows in a block
+    // factors are the query weights that unscaled doc weights are multiplied
+    //   by (including any per-term scales)
+    // block holds the unscaled weight of each query term for each candidate
+    // vecs are the candidates of the current block
+    int terms = query.size(), width = Math.min(BLOCK, ids.length);
+    double[] res = new double[ids.length], factors = new double[terms],
+      block = new double[terms*width], out = new double[width];
+    WeightVector[] vecs = new WeightVector[width];
+
+    for(int j=0; j<terms; j++)
+      factors[j] = (precision >= PREC_LIN8 && termScales != null ?
+        query.weight(j) * termScales[query.id(j)] : query.weight(j));
+
+    for(int s=0; s<ids.length; s+=BLOCK) {
+      int n = Math.min(BLOCK, ids.length-s);
+
+      // Gather the candidates' weights for the query terms into the block
+      Arrays.fill(block, 0, terms*n, 0.0);
+      for(int c=0; c<n; c++) {
+        vecs[c] = getDoc(ids[s+c]);
+        for(int j=0; j<terms; j++) {
+          int i = vecs[c].find(query.id(j));
+          if (i >= 0) { block[j*n+c] = vecs[c].unscaled(i); }
+        }
+      }
+
+      if (SIMD)
+        VectorKernel.score(block, factors, terms, n, out);
+      else
+        for(int c=0; c<n; c++) {
+          double sum = 0.0;
+          for(int j=0; j<terms; j++) { sum += block[j*n+c] * factors[j]; }
+          out[c] = sum;
+        }
+
+      // Apply each candidate's scale; a vector that was decoded after the
+      // model's precision was set is scored on its own instead
+      for(int c=0; c<n; c++)
+        res[s+c] = (vecs[c].isEncoded(precision, termScales) ?
+          vecs[c].rescale(out[c]) : vecs[c].dot(query));
+    }
+
+    return res;
+  }
+
+  /** Returns a description of how batches of documents are scored */
+  public static String describeScoring() {
+    return (SIMD ? "SIMD ("+VectorKernel.lanes()+" lanes)" : "scalar");
+  }
+
+  /**
+   * Ranks every document vector of the model against a query
+   * @param query The query vector, keyed by term
+   * @param k The number of documents to return
+   * @return The IDs of the k most similar documents, most similar first; ties
+   *   go to the lower ID, as they do in query results
+   */
+  public int[] topDocuments(Hashtable<String,Double> query, int k) {
+    int[] top = new int[Math.min(k, model.size())], ids = new int[model.size()];
+    double[] sims = new double[top.length], all;
+    int cnt = 0;
+    if (top.length == 0) { return top; }
+
+    for(int id=0; id<ids.length; id++) { ids[id] = id; }
+    all = cosineSim(ids, queryVector(query));
+
+    // Insert each document into the sorted top-k list if it makes the cut
+    for(int id=0; id<ids.length; id++) {
+      double sim = all[id];
+      if (cnt == top.length && sim <= sims[cnt-1]) { continue; }
+
+      int i = (cnt < top.length ? cnt++ : cnt-1);
+      while(i > 0 && sims[i-1] < sim) {
+        top[i] = top[i-1]; sims[i] = sims[i-1]; i--;
+      }
+      top[i] = id; sims[i] = sim;
+    }
+
+    return top;
+  }
+
+  /**
+   * Ranks every document vector of the model against a batch of queries.
+   * Rather than scoring each query on its own, the documents and unscaled
+   * weights of every term the batch needs are listed in one pass over the
+   * vectors, and each list is scanned once, adding its weights to the
+   * similarities of every query that has the term. Terms are scanned in
+   * ascending order of ID, the order dot(...) and cosineSim(...) sum them
+   * in, so the rankings are identical to calling topDocuments(query, k) for
+   * each. Similarities are kept for at most ACCUMULATORS queries times
+   * documents at once, so a large batch is ranked in groups of queries
+   * @param queries The query vectors, keyed by term
+   * @param k The number of documents to return for each query
+   * @return The IDs of the k most similar documents for each query, in the
+   *   order of the queries, most similar first; ties go to the lower ID
+   */
+  public ArrayList<int[]> topDocuments(ArrayList<Hashtable<String,Double>>
+    queries, int k) {
+    // docs is the number of documents, whose IDs run from 0 to docs-1, as
+    //   they do for topDocuments(query, k)
+    // qvs are the queries as vectors over the model's terms
+    // slot is the index of each term the batch needs in 'lists' (-1 if none)
+    ArrayList<int[]> res = new ArrayList<>();
+    int docs = model.size(), nLists = 0;
+    WeightVector[] qvs = new WeightVector[queries.size()];
+    int[] slot = new int[terms.size()];
+    Arrays.fill(slot, -1);
+
+    for(int q=0; q<qvs.length; q++) {
+      qvs[q] = queryVector(queries.get(q));
+      for(int j=0; j<qvs[q].size(); j++)
+        if (slot[qvs[q].id(j)] < 0) { slot[qvs[q].id(j)] = nLists++; }
+    }
+
+    // List the unscaled weights of every term the batch needs, in ascending
+    // order of document; the documents themselves are the term's DocSet,
+    // which lists them in the same order
+    double[][] listVals = new double[nLists][];
+    int[] fill = new int[nLists];
+    for(int t=0; t<slot.length; t++)
+      if (slot[t] >= 0) { listVals[slot[t]] = new double[docFrequency(t)]; }
+
+    WeightVector[] vecs = new WeightVector[docs];
+    for(int d=0; d<docs; d++) {
+      vecs[d] = getDoc(d);
+      for(int i=0; i<vecs[d].size(); i++) {
+        int s = slot[vecs[d].id(i)];
+        if (s < 0) { continue; }
+        listVals[s][fill[s]++] = vecs[d].unscaled(i);
+      }
+    }
+
+    // acc holds the similarities of a group of queries with every document;
+    //   the group's similarities with document d start at d*n
+    int group = Math.max(1, ACCUMULATORS / Math.max(1, docs));
+    double[] acc = new double[Math.min(group, qvs.length)*docs];
+
+    for(int g=0; g<qvs.length; g+=group) {
+      int n = Math.min(group, qvs.length-g), cnt = 0;
+      for(int q=0; q<n; q++) { cnt += qvs[g+q].size(); }
+
+      // Each query term of the group is an entry: its term packed beside
+      // its index in a long, so a single primitive sort orders them by term,
+      // and its query and the query weight its list is multiplied by
+      long[] entries = new long[cnt];
+      int[] owner = new int[cnt];
+      double[] factors = new double[cnt];
+      cnt = 0;
+      Arrays.fill(acc, 0.0);
+      for(int q=0; q<n; q++) {
+        WeightVector qv = qvs[g+q];
+        for(int j=0; j<qv.size(); j++, cnt++) {
+          entries[cnt] = ((long)qv.id(j) << 32) | cnt;
+          owner[cnt] = q;
+          factors[cnt] = (precision >= PREC_LIN8 && termScales != null ?
+            qv.weight(j) * termScales[qv.id(j)] : qv.weight(j));
+        }
+      }
+      Arrays.sort(entries);
+
+      // Scan each term's list once, adding each of its weights to the
+      // similarities of every query of the group that has the term (the
+      // entries e..end); its documents are listed a container of its DocSet
+      // at a time into ids
+      int[] qs = new int[n], ids = new int[1 << 16];
+      double[] fs = new double[n];
+      for(int e=0, end; e<cnt; e=end) {
+        int t = (int)(entries[e] >>> 32), m = 0;
+        for(end=e; end<cnt && (int)(entries[end] >>> 32) == t; end++, m++) {
+          qs[m] = owner[(int)entries[end]];
+          fs[m] = factors[(int)entries[end]];
+        }
+
+        DocSet ld = docSets[t];
+        double[] lv = listVals[slot[t]];
+        for(int c=0, i=0; c<ld.containers(); c++)
+          for(int x=0, len=ld.list(c, ids); x<len; x++, i++) {
+            int at = ids[x]*n;
+            double v = lv[i];
+            for(int r=0; r<m; r++) { acc[at+qs[r]] += v * fs[r]; }
+          }
+      }
+
+      // Apply each document's scale, and keep the top k of each query; a
+      // vector that was decoded after the model's precision was set is
+      // scored on its own instead
+      for(int q=0; q<n; q++) {
+        TopK top = new TopK(Math.min(k, docs));
+        for(int d=0; d<docs; d++)
+          top.offer(vecs[d].isEncoded(precision, termScales) ?
+            vecs[d].rescale(acc[d*n+q]) : vecs[d].dot(qvs[g+q]), d);
+        res.add(top.positions());
+      }
+    }
+
     return res;
   }
 
+  /** Returns whether the Vector API can be used to score blocks */
+  private static boolean simdAvailable() {
+    try { return VectorKernel.lanes() > 1; }
+    catch(LinkageError e) { return false; }
+  }
+
+  /**
+   * Parses the name of a precision
+   * @param name The name of the precision, such as 'float'
+   * @return The matching PREC_* value, or -1 if the name is unknown
+   */
+  public static byte parsePrecision(String name) {
+    for(byte i=0; i<PREC_NAMES.length; i++)
+      if (PREC_NAMES[i].equals(name)) { return i; }
+    return -1;
+  }
+
   /** Normalizes a specific document vector by computing the euclidean length
    *  @param vector The vector to be normalized */
   public static void normalize(Hashtable<String,Double> vector) {
@@ -279,4 +869,4 @@ public class Model {
     printVector(vector, 2);
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,226 @@
+/**
+ * File:    ParallelLoader.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.1
+ * Description:
+ * ParallelLoader parses the records of a line-per-record text file (a tiered
+ * index or a vsm) on several threads. Once the header of a file has been read,
+ * the rest of it is split into byte ranges that each end on a newline; every
+ * range is memory-mapped and parsed on its own by a RecordReader, and the
+ * results are handed back in file order so the caller can merge them exactly
+ * as a sequential load would have.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ * Version 1.1 (19 October 2026)
+ * - Lines can be skipped without being decoded (skipLines), so a caller can
+ *   find where a file's records end before splitting them
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+class ParallelLoader {
+  // THREADS is the number of threads that records are parsed on
+  // CHUNKS is the number of ranges made per thread, so that threads which
+  //   finish early can pick up more of the file
+  // MAX_RANGE is the most bytes a single range should span
+  public static int THREADS = Runtime.getRuntime().availableProcessors();
+  private static final int CHUNKS = 4, MAX_RANGE = 1 << 30;
+
+  /** A parser for the records in one range of a file */
+  interface RangeParser<T> {
+    T parse(RecordReader in) throws IOException;
+  }
+
+  /**
+   * Reads lines sequentially from a file, decoding them as UTF-8
+   * @param ch The file to read from
+   * @param from The offset of the first line
+   * @param n The number of lines to read
+   * @param lines The list that the lines are added to
+   * @return The offset just past the last line read
+   * @throws IOException If the file ends before n lines have been read
+   */
+  public static long readLines(FileChannel ch, long from, int n,
+    ArrayList<String> lines) throws IOException {
+    // buf is the block of the file being scanned, and line the current line
+    ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    long at = from;
+
+    buf.limit(0);
+    while(n > 0) {
+      if (!buf.hasRemaining()) {
+        buf.clear();
+        if (ch.read(buf, at) <= 0)
+          throw new IOException("Unexpected end of file while reading lines");
+        buf.flip();
+      }
+
+      byte b = buf.get();
+      at++;
+      if (b == '\n') {
+        lines.add(new String(line.toByteArray(), StandardCharsets.UTF_8)
+          .replace("\r", ""));
+        line.reset();
+        n--;
+      }
+      else
+        line.write(b);
+    }
+
+    return at;
+  }
+
+  /**
+   * Skips lines of a file without decoding them
+   * @param ch The file to read from
+   * @param from The offset of the first line
+   * @param n The number of lines to skip
+   * @return The offset just past the last line skipped, or the end of the
+   *   file if it ends first (its last line needn't end with a newline)
+   */
+  public static long skipLines(FileChannel ch, long from, int n)
+    throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+    long at = from;
+
+    while(n > 0) {
+      buf.clear();
+      if (ch.read(buf, at) <= 0) { return ch.size(); }
+      buf.flip();
+      while(n > 0 && buf.hasRemaining()) {
+        if (buf.get() == '\n') { n--; }
+        at++;
+      }
+    }
+
+    return at;
+  }
+
+  /**
+   * Splits part of a file into ranges for parsing. Every range but the last
+   * ends just after a newline, so no record is split between two ranges
+   * @param ch The file to split
+   * @param from The offset where the records start
+   * @param to The offset where the records end
+   * @return The bounds of the ranges; range i spans bounds[i] (inclusive) to
+   *   bounds[i+1] (exclusive)
+   */
+  public static long[] split(FileChannel ch, long from, long to)
+    throws IOException {
+    int n = (int)Math.max((long)THREADS*CHUNKS, (to-from)/MAX_RANGE + 1);
+    long[] bounds = new long[n+1];
+    ByteBuffer buf = ByteBuffer.allocate(4096);
+    int cnt = 1;
+
+    bounds[0] = from;
+    for(int k=1; k<n; k++) {
+      // Move the cut forward to just after the next newline
+      long at = Math.max(from + (to-from)*k/n, bounds[cnt-1]);
+      boolean found = false;
+      while(!found && at < to) {
+        buf.clear();
+        if (ch.read(buf, at) <= 0) { break; }
+        buf.flip();
+        while(buf.hasRemaining() && !found) {
+          found = (buf.get() == '\n');
+          at++;
+        }
+      }
+
+      if (found && at < to && at > bounds[cnt-1]) { bounds[cnt++] = at; }
+    }
+    bounds[cnt++] = to;
+
+    long[] res = new long[cnt];
+    System.arraycopy(bounds, 0, res, 0, cnt);
+    return res;
+  }
+
+  /**
+   * Parses every range of a file concurrently
+   * @param ch The file being parsed
+   * @param bounds The bounds of the ranges, as returned by split
+   * @param parser The parser applied to the records of each range
+   * @return The result of each range, in file order
+   */
+  public static <T> ArrayList<T> parse(FileChannel ch, long[] bounds,
+    RangeParser<T> parser) throws IOException {
+    ArrayList<Callable<T>> tasks = new ArrayList<>();
+
+    for(int i=0; i+1<bounds.length; i++) {
+      final ByteBuffer range = ch.map(FileChannel.MapMode.READ_ONLY,
+        bounds[i], bounds[i+1]-bounds[i]);
+      tasks.add(() -> parser.parse(new RecordReader(
+        new InputStreamReader(stream(range), StandardCharsets.UTF_8))));
+    }
+
+    return run(tasks);
+  }
+
+  /**
+   * Runs a list of tasks on the loader's threads
+   * @param tasks The tasks to run
+   * @return The result of each task, in the order the tasks were given
+   * @throws IOException If any task failed
+   */
+  public static <T> ArrayList<T> run(ArrayList<Callable<T>> tasks)
+    throws IOException {
+    ExecutorService pool = Executors.newFixedThreadPool(
+      Math.max(1, Math.min(THREADS, tasks.size())));
+    ArrayList<T> res = new ArrayList<>(tasks.size());
+
+    try {
+      for(Future<T> f : pool.invokeAll(tasks))
+        res.add(f.get());
+    }
+    catch(ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) { throw (IOException)cause; }
+      if (cause instanceof RuntimeException) { throw (RuntimeException)cause; }
+      throw new IOException(cause);
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading");
+    }
+    finally {
+      pool.shutdown();
+    }
+
+    return res;
+  }
+
+  /** Returns a stream over the remaining bytes of a buffer */
+  private static InputStream stream(ByteBuffer buf) {
+    return new InputStream() {
+      @Override
+      public int read() {
+        return (buf.hasRemaining() ? (buf.get() & 0xFF) : -1);
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (!buf.hasRemaining()) { return -1; }
+        len = Math.min(len, buf.remaining());
+        buf.get(b, off, len);
+        return len;
+      }
+    };
+  }
+}
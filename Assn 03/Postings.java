@@ -0,0 +1,315 @@
+/**
+ * File:    Postings.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.1
+ * Description:
+ * Postings is the postings list of a single token: the documents it occurs in
+ * and its positions in each. It's built for index construction, where every
+ * occurrence is appended as a (document, position) pair. Positions go into a
+ * byte slab owned by the token, written as variable-length gaps from the
+ * position before them in the same document, so a typical position costs one
+ * or two bytes and nothing is boxed. Each document adds three ints: its ID,
+ * its number of positions, and the offset of its first position in the slab.
+ *
+ * The positions of a document must be appended together and in ascending
+ * order, but documents may be appended in any order; they're sorted by ID
+ * the first time the list is read.
+ *
+ * A list loaded from an index may leave its positions in the index's
+ * positions file: only the ID and number of positions of each document are
+ * read, and the slab is read from the file the first time a position is
+ * needed. The slab is stored in the file exactly as it's kept in memory, so
+ * the offset of each document's positions is found by skipping the
+ * positions of the documents before it.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ * Version 1.1 (18 October 2026)
+ * - Positions can be read lazily from an index's positions file, and
+ *   written to one with writePositions
+ */
+
+// Import statements
+import java.util.Arrays;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+class Postings {
+  // docs, counts, and offs hold the ID of each document, the number of
+  //   positions in it, and the offset of its first position in the slab
+  // slab is the encoded positions of every document
+  // size is the number of documents, and len the number of slab bytes in use
+  // open is the index of the document being appended to (or -1 if none),
+  //   and last is the last position appended to it
+  // sorted is whether the documents are in ascending order of ID
+  // src is the positions file the slab is still to be read from (null once
+  //   it's been read, or if positions were appended directly), and srcOff
+  //   and srcLen are where the slab is in that file
+  private int[] docs, counts, offs;
+  private byte[] slab;
+  private int size, len, open, last;
+  private boolean sorted;
+  private volatile FileChannel src;
+  private long srcOff;
+  private int srcLen;
+
+  public Postings() {
+    docs = new int[2];
+    counts = new int[2];
+    offs = new int[2];
+    slab = new byte[8];
+    size = len = last = 0;
+    open = -1;
+    sorted = true;
+    src = null;
+  }
+
+  /** Returns the number of documents in the list */
+  public int size() { return size; }
+
+  /** Returns the ID of the i-th document, in ascending order of ID */
+  public int doc(int i) { sort(); return docs[i]; }
+
+  /** Returns the number of positions in the i-th document */
+  public int count(int i) { sort(); return counts[i]; }
+
+  /** Returns the number of positions across every document */
+  public int total() {
+    int res = 0;
+    for(int i=0; i<size; i++)
+      res += counts[i];
+    return res;
+  }
+
+  /**
+   * Returns the index of a document in the list
+   * @param doc The ID of the document
+   * @return Its index, or -1 if the token doesn't occur in the document
+   */
+  public int indexOf(int doc) {
+    sort();
+    int i = Arrays.binarySearch(docs, 0, size, doc);
+    return (i < 0 ? -1 : i);
+  }
+
+  /** Returns the IDs of the documents in the list, in ascending order */
+  public int[] docs() {
+    sort();
+    return Arrays.copyOf(docs, size);
+  }
+
+  /**
+   * Decodes the positions of the i-th document
+   * @param i The index of the document
+   * @param buf An array to decode into, which is reused if it's large enough
+   * @return The array holding the positions (the first count(i) entries)
+   */
+  public int[] positions(int i, int[] buf) {
+    if (src != null) { load(); }
+    sort();
+    if (buf == null || buf.length < counts[i]) { buf = new int[counts[i]]; }
+
+    // at is the current offset in the slab, and pos the last position decoded
+    int at = offs[i], pos = 0;
+    for(int k=0; k<counts[i]; k++) {
+      int gap = 0, shift = 0, b;
+      do {
+        b = slab[at++];
+        gap |= (b & 0x7F) << shift;
+        shift += 7;
+      } while(b < 0);
+
+      buf[k] = (pos += gap);
+    }
+
+    return buf;
+  }
+
+  /**
+   * Appends an occurrence of the token
+   * @param doc The ID of the document it occurs in
+   * @param loc Its position in the document, which may not be less than the
+   *   last position appended for that document
+   */
+  public void add(int doc, int loc) {
+    if (src != null) { load(); }
+
+    // Start a new document if this isn't the one being appended to
+    if (open < 0 || docs[open] != doc) {
+      if (size == docs.length) {
+        int cap = Math.max(2, size*2);
+        docs = Arrays.copyOf(docs, cap);
+        counts = Arrays.copyOf(counts, cap);
+        offs = Arrays.copyOf(offs, cap);
+      }
+
+      if (size > 0 && doc < docs[size-1]) { sorted = false; }
+      docs[size] = doc;
+      counts[size] = 0;
+      offs[size] = len;
+      open = size++;
+      last = 0;
+    }
+
+    // Write the gap from the last position, seven bits at a time
+    if (len+5 > slab.length)
+      slab = Arrays.copyOf(slab, Math.max(len+5, slab.length*2));
+    int gap = loc-last;
+    while((gap & ~0x7F) != 0) {
+      slab[len++] = (byte)((gap & 0x7F) | 0x80);
+      gap >>>= 7;
+    }
+    slab[len++] = (byte)gap;
+
+    last = loc;
+    counts[open]++;
+  }
+
+  /**
+   * Gives every document in the list a new ID. The documents are re-sorted
+   * the next time the list is read
+   * @param map The new ID of each old ID
+   */
+  public void remap(int[] map) {
+    if (src != null) { load(); }
+    for(int i=0; i<size; i++) { docs[i] = map[docs[i]]; }
+    sorted = false;
+    open = -1;
+  }
+
+  /**
+   * Appends a document whose positions are in the positions file given to
+   * setSource, rather than appended one at a time
+   * @param doc The ID of the document
+   * @param count The number of positions the token has in it
+   */
+  public void addDoc(int doc, int count) {
+    if (size == docs.length) {
+      int cap = Math.max(2, size*2);
+      docs = Arrays.copyOf(docs, cap);
+      counts = Arrays.copyOf(counts, cap);
+      offs = Arrays.copyOf(offs, cap);
+    }
+
+    if (size > 0 && doc < docs[size-1]) { sorted = false; }
+    docs[size] = doc;
+    counts[size++] = count;
+    open = -1;
+  }
+
+  /**
+   * Notes where the positions of the documents added with addDoc are kept,
+   * so they can be read once they're needed
+   * @param ch The positions file
+   * @param off The offset of the list's positions in the file
+   * @param bytes The number of bytes they take
+   */
+  public void setSource(FileChannel ch, long off, int bytes) {
+    srcOff = off;
+    srcLen = bytes;
+    src = ch;
+  }
+
+  /**
+   * Writes the positions of every document, in ascending order of ID, in the
+   * form they're kept in the slab, so they can be read back with setSource
+   * @param out The stream to write to
+   * @return The number of bytes written
+   */
+  public int writePositions(OutputStream out) throws IOException {
+    if (src != null) { load(); }
+    sort();
+
+    int res = 0;
+    for(int i=0; i<size; i++) {
+      // Skip over the document's positions to find where they end
+      int end = offs[i];
+      for(int k=0; k<counts[i]; k++)
+        while(slab[end++] < 0) { /* Continuation byte */ }
+
+      out.write(slab, offs[i], end-offs[i]);
+      res += end-offs[i];
+    }
+
+    return res;
+  }
+
+  /** Shrinks the backing arrays to the space in use */
+  public void trim() {
+    docs = Arrays.copyOf(docs, size);
+    counts = Arrays.copyOf(counts, size);
+    offs = Arrays.copyOf(offs, size);
+    slab = Arrays.copyOf(slab, len);
+  }
+
+  /** Removes every document from the list */
+  public void clear() {
+    size = len = last = 0;
+    open = -1;
+    sorted = true;
+    src = null;
+  }
+
+  /**
+   * Reads the slab from the positions file, and finds where each document's
+   * positions start in it. The documents are still in the order the file
+   * has them in, as nothing that reorders them runs before this
+   */
+  private synchronized void load() {
+    if (src == null) { return; }
+
+    try {
+      slab = new byte[srcLen];
+      ByteBuffer buf = ByteBuffer.wrap(slab);
+      while(buf.hasRemaining())
+        if (src.read(buf, srcOff+buf.position()) < 0)
+          throw new IOException("Unexpected end of the positions file");
+    }
+    catch(IOException e) {
+      System.err.println("ERR: Error reading positions from the index!");
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+
+    int at = 0;
+    for(int i=0; i<size; i++) {
+      offs[i] = at;
+      for(int k=0; k<counts[i]; k++)
+        while(slab[at++] < 0) { /* Continuation byte */ }
+    }
+
+    len = srcLen;
+    src = null;
+  }
+
+  /**
+   * Sorts the documents by ID if they were appended out of order. The slab
+   * isn't touched; only the per-document entries are permuted
+   */
+  private void sort() {
+    if (sorted) { return; }
+    if (src != null) { load(); }
+
+    // Pack each ID with its index, so a single primitive sort orders both
+    long[] order = new long[size];
+    for(int i=0; i<size; i++)
+      order[i] = ((long)docs[i] << 32) | i;
+    Arrays.sort(order);
+
+    int[] nCounts = new int[docs.length], nOffs = new int[docs.length];
+    for(int i=0; i<size; i++) {
+      int k = (int)order[i];
+      docs[i] = (int)(order[i] >>> 32);
+      nCounts[i] = counts[k];
+      nOffs[i] = offs[k];
+    }
+
+    counts = nCounts;
+    offs = nOffs;
+    open = -1;
+    sorted = true;
+  }
+}
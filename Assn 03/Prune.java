@@ -0,0 +1,291 @@
+/**
+ * File:    Prune.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.2
+ * Description:
+ * Prune is an offline tool for static index pruning. It loads a pair of
+ * vector space model files, removes the components of the content model that
+ * contribute least to similarity, and saves the pair again, so the pruned
+ * files load and query through Corpus like any others. The weight of a
+ * component is its IDF weight times its TF weight, after normalization, which
+ * is exactly what it adds to a cosine similarity per unit of query weight.
+ *
+ * Components are ranked by one of two scores, and the lowest-scoring ones are
+ * removed until only the requested fraction of them is left (or as close to
+ * it as the components that are always kept allow):
+ * - term (default): a component's weight relative to the TOP-th largest
+ *   weight of its term (Carmel et al., 2001), so every term keeps the
+ *   documents it ranks highest; terms in no more than TOP documents are kept
+ *   whole
+ * - global: a component's weight, so one cutoff applies to every term
+ *
+ * The remaining weights aren't renormalized. The title model is saved as it
+ * was loaded. Afterwards, a log of queries (or a sample of document titles)
+ * is run against the content model before and after pruning, and the overlap
+ * of their top TOP results is reported.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ * Version 1.1 (18 October 2026)
+ * - The queries are ranked as one batch, before and after pruning
+ * Version 1.2 (19 October 2026)
+ * - The fraction of components actually kept is reported beside the one
+ *   requested, with a warning when it's missed by more than MISS (when the
+ *   components always kept, or those tied with the cutoff, are too many)
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Arrays;
+import java.io.File;
+import java.io.FileReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+
+public class Prune {
+  // QUERIES is the most titles sampled as queries when no log is given
+  // TOP is the number of top results compared, and the rank of the weight
+  //   per-term scores are relative to
+  // MISS is how far above the requested fraction the fraction kept may be
+  //   before a warning is printed
+  private static final int QUERIES = 200, TOP = 10;
+  private static final double MISS = 0.005;
+
+  // vsm[] are the input and output title and content vsm files
+  // keep is the fraction of content components to keep
+  // global specifies whether components are scored by weight alone
+  // log is a file of queries, one per line (empty to sample titles)
+  private static String[] vsm = {"", "", "", ""};
+  private static double keep = 0.5;
+  private static boolean global = false;
+  private static String log = "";
+
+  public static void main(String[] args) {
+    argumentCheck(args);
+
+    System.out.println("Reading Vector Space Model... Please Wait...");
+    Corpus.vsmTitle.load(vsm[0]);
+    Corpus.vsmDoc.load(vsm[1]);
+    Corpus.vsmTitleLoad(vsm[0]);
+
+    // Rank the queries before pruning, to compare against afterwards
+    ArrayList<Hashtable<String,Double>> queries = queryLog();
+    ArrayList<int[]> ref = Corpus.vsmDoc.topDocuments(queries, TOP);
+
+    System.out.printf("Pruning Content Model (%s scores, keeping %.1f%%)...\n",
+      (global ? "global" : "term"), 100.0*keep);
+    long[] counts = prune(Corpus.vsmDoc);
+
+    System.out.println("Saving Vector Space Model to Disk...");
+    Corpus.vsmTitle.save(vsm[2]);
+    Corpus.vsmDoc.save(vsm[3]);
+    Corpus.vsmTitleSave(vsm[2]);
+
+    // Report the size of the content model, and how its rankings changed
+    ArrayList<int[]> res = Corpus.vsmDoc.topDocuments(queries, TOP);
+    int overlap = 0, total = 0;
+    for(int i=0; i<queries.size(); i++) {
+      int[] a = ref.get(i), b = res.get(i);
+      for(int x : a)
+        for(int y : b)
+          if (x == y) { overlap++; break; }
+      total += a.length;
+    }
+
+    double kept = (double)counts[1]/Math.max(1, counts[0]);
+    System.out.printf("  Components: %,d -> %,d (%.1f%% kept, %.1f%% requested)\n",
+      counts[0], counts[1], 100.0*kept, 100.0*keep);
+    if (kept > keep+MISS) {
+      System.out.println("  WARNING: More was kept than requested, as:");
+      if (counts[2] > 0)
+        System.out.printf("    %,d components are of terms in no more than "+
+          "%d documents, which are always kept\n", counts[2], TOP);
+      if (counts[3] > 0)
+        System.out.printf("    %,d more components tie with the cutoff\n",
+          counts[3]);
+    }
+    System.out.printf("  Content vsm file: %,d KB -> %,d KB\n",
+      new File(vsm[1]).length()/1024, new File(vsm[3]).length()/1024);
+    System.out.printf("  Top-%d agreement %.1f%% (%d queries%s)\n", TOP,
+      (total == 0 ? 100.0 : 100.0*overlap/total), queries.size(),
+      (log.equals("") ? " from titles" : " from "+log));
+  }
+
+  /**
+   * Checks the command line for invalid arguments, setting options as valid
+   * ones are parsed out. If an invalid argument is found, the program will
+   * be terminated
+   * @param args The set of arguments passed to the program
+   */
+  private static void argumentCheck(String[] args) {
+    // params is the list of arguments that aren't options
+    ArrayList<String> params = new ArrayList<>();
+
+    for(String arg : args) {
+      if (arg.startsWith("-keep[")) {
+        try {
+          keep = Double.parseDouble(
+            arg.substring(arg.indexOf('[')+1).replace("]",""));
+        }
+        catch(NumberFormatException e) { keep = -1; }
+
+        if (!(keep > 0 && keep <= 1)) {
+          System.err.println("SYS: The fraction to keep must be in (0, 1]!");
+          printUsage();
+          System.exit(1);
+        }
+      }
+      else if (arg.equals("-global"))
+        global = true;
+      else if (arg.startsWith("-log["))
+        log = arg.substring(arg.indexOf('[')+1).replace("]","");
+      else
+        params.add(arg);
+    }
+
+    if (params.size() != 4) {
+      System.err.println("SYS: Unrecognized set of parameters!");
+      printUsage();
+      System.exit(1);
+    }
+
+    for(int i=0; i<4; i++) { vsm[i] = params.get(i); }
+  }
+
+  /** Prints the proper usage information for this program */
+  private static void printUsage() {
+    System.err.println(
+      "Usage: java Prune <in-vsm-head> <in-vsm> <out-vsm-head> <out-vsm>"+
+      " [options]\n"+
+      "Parameters:\n"+
+      "  -keep[f]  | Keeps the fraction f of content components\n"+
+      "     (Default: 0.5)\n"+
+      "  -global   | Scores components by weight alone, instead of\n"+
+      "     relative to the top weights of their terms\n"+
+      "  -log[q]   | File of queries, one per line, to measure agreement\n"+
+      "     with (Default: a sample of document titles)\n"+
+      "  in-vsm-head  | File storing a vsm for doc titles\n"+
+      "  in-vsm       | File storing a vsm for doc content\n"+
+      "  out-vsm-head | Output file for the vsm for doc titles\n"+
+      "  out-vsm      | Output file for the pruned vsm for doc content");
+  }
+
+  /**
+   * Reads the queries agreement is measured with: the lines of the query log,
+   * or a sample of document titles if no log was given
+   * @return The query vectors
+   */
+  private static ArrayList<Hashtable<String,Double>> queryLog() {
+    ArrayList<Hashtable<String,Double>> res = new ArrayList<>();
+    TitleStore titles = Corpus.docTitles;
+
+    if (log.equals("")) {
+      for(int i=0; i<titles.size(); i+=Math.max(1, titles.size()/QUERIES))
+        res.add(Query.queryGen(Corpus.preProcessLine(titles.get(i)).split(" ")));
+      return res;
+    }
+
+    try {
+      BufferedReader r = new BufferedReader(new FileReader(log));
+      String line;
+
+      while((line = r.readLine()) != null)
+        if (!line.trim().equals(""))
+          res.add(Query.queryGen(Corpus.preProcessLine(line).split(" ")));
+
+      r.close();
+    }
+    catch(IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+
+    return res;
+  }
+
+  /**
+   * Removes the lowest-scoring components of a model, keeping the requested
+   * fraction of them. Components that tie with the cutoff are all kept, as
+   * are those of terms too rare to score, so more may be kept than requested
+   * @param model The model to prune
+   * @return The number of components before and after pruning, the number
+   *   that were always kept, and the number kept beyond the requested count
+   *   because they tied with the cutoff
+   */
+  private static long[] prune(Model model) {
+    // scale is what each term's weights are divided by to score them
+    // scores is the score of every component, in document order
+    float[] scale = termScales(model);
+    int total = 0;
+    for(int d=0; d<model.size(); d++) { total += model.getDoc(d).size(); }
+
+    double[] scores = new double[total];
+    for(int d=0, n=0; d<model.size(); d++) {
+      WeightVector v = model.getDoc(d);
+      for(int i=0; i<v.size(); i++, n++)
+        scores[n] = (scale[v.id(i)] == 0 ? Double.POSITIVE_INFINITY :
+          v.weight(i) / scale[v.id(i)]);
+    }
+
+    // The cutoff is the lowest score that's kept
+    double[] sorted = scores.clone();
+    Arrays.sort(sorted);
+    int cnt = (int)Math.ceil(keep*total);
+    double cutoff = (cnt == 0 ? Double.POSITIVE_INFINITY : sorted[total-cnt]);
+
+    // always counts the components of terms too rare to score, and ties the
+    // components kept past the requested count for tying with the cutoff
+    long left = 0, always = 0, ties = 0;
+    for(int k=total-1; k>=0 && sorted[k] == Double.POSITIVE_INFINITY; k--) { always++; }
+    for(int k=total-cnt-1; k>=0 && cutoff != Double.POSITIVE_INFINITY && sorted[k] == cutoff; k--)
+      ties++;
+
+    for(int d=0, n=0; d<model.size(); d++) {
+      WeightVector v = model.getDoc(d);
+      boolean[] flags = new boolean[v.size()];
+      for(int i=0; i<v.size(); i++, n++) { flags[i] = (scores[n] >= cutoff); }
+      left += model.retain(d, flags);
+    }
+
+    return new long[]{ total, left, always, ties };
+  }
+
+  /**
+   * Computes what each term's weights are divided by to score them: 1 for
+   * global scores, or the TOP-th largest weight of the term for per-term
+   * scores (0 if the term is in TOP documents or fewer, whose components
+   * are always kept)
+   * @param model The model to score
+   * @return The divisor of each term, indexed by term ID
+   */
+  private static float[] termScales(Model model) {
+    float[] res = new float[model.termCount()];
+    if (global) { Arrays.fill(res, 1f); return res; }
+
+    // Group the weights of every term together: start[t] is where term t's
+    // weights begin in 'weights'
+    int[] start = new int[res.length+1], at;
+    for(int d=0; d<model.size(); d++) {
+      WeightVector v = model.getDoc(d);
+      for(int i=0; i<v.size(); i++) { start[v.id(i)+1]++; }
+    }
+    for(int t=0; t<res.length; t++) { start[t+1] += start[t]; }
+
+    float[] weights = new float[start[res.length]];
+    at = Arrays.copyOf(start, res.length);
+    for(int d=0; d<model.size(); d++) {
+      WeightVector v = model.getDoc(d);
+      for(int i=0; i<v.size(); i++) { weights[at[v.id(i)]++] = (float)v.weight(i); }
+    }
+
+    for(int t=0; t<res.length; t++) {
+      if (start[t+1]-start[t] <= TOP) { continue; }
+      Arrays.sort(weights, start[t], start[t+1]);
+      res[t] = weights[start[t+1]-TOP];
+    }
+
+    return res;
+  }
+}
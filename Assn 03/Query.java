@@ -1,6 +1,6 @@
 /*
  * File:    Query.java
- * Version: 2.2
+ * Version: 2.3
  * Author:  Matthew Morgan
  * Description:
  * Query displays, and operates, the query interface for processing queries on
@@ -15,6 +15,15 @@
  * Version 2.2 (2 May 2018)
  * - "!title" handles the displaying of document titles to the screen
  * - "!system" allows tuning of system parameters for query operation
+ * Version 2.3 (18 October 2026)
+ * - Title similarity is only computed for the documents that share a term
+ *   with the query; the rest score 0, and are listed by ID as before
+ * - "!system" shows the size of the models' term doc sets
+ * - Queries whose estimated cost (the number of documents holding each of
+ *   their terms) is high enough are scored in parallel, over partitions of
+ *   the candidates that each keep their own top-k (see TopK.java)
+ * - The querying interface ends when its input does, as well as on the exit
+ *   command
  *
  * IT LOOKS LIKE VECTOR ISN'T PRINTING DOCUMENT RANGE???
  * 
@@ -41,7 +50,9 @@
 import java.util.Scanner;
 import java.util.ArrayList;
 import java.util.Hashtable;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class Query {
     // CMD_EXIT is a special command that will terminate the query interface
@@ -55,6 +66,15 @@ public class Query {
         CMD_VECTOR = "!vector", CMD_USAGE = "!usage", CMD_TITLE = "!title",
         CMD_TUNE = "!system", CMD_TERM = "!term";
 
+    // PARALLEL_COST is the estimated cost of a query - the number of
+    //   components it's scored against - above which it's scored in parallel
+    // GRAIN is the fewest candidates that one parallel task scores
+    // pool is the pool that queries are scored in parallel on, which is shared
+    //   by every query (and made when it's first needed)
+    static long PARALLEL_COST = 1 << 17;
+    private static final int GRAIN = 2048;
+    private static ForkJoinPool pool = null;
+
     // rawQuery is the raw string given by the user during querying
     // dic is a reference to the dictionary of tokens this query will use
     // vsm is a reference to the vector space model this query will use
@@ -64,16 +84,16 @@ public class Query {
     //   will be shown as results
     private String rawQuery = "";
     private Model title, documents;
-    private ArrayList<String> titles;
+    private TitleStore titles;
     private int resCntTitle = 25, resCntDoc = 10;
 
     /**
      * Instantiates a query object
      * @param t The VSM for titles
      * @param d The VSM for document content
-     * @param ts List of titles, as strings
+     * @param ts Store of document titles
      */
-    public Query(Model t, Model d, ArrayList<String> ts) {
+    public Query(Model t, Model d, TitleStore ts) {
         title = t;
         documents = d;
         titles = ts;
@@ -89,12 +109,13 @@ public class Query {
             CMD_HELP, CMD_EXIT);
         
         // Continue getting queries and processing them until the exit command
-        // has been entered
+        // has been entered, or the input ends
         do {
             queryParse();
             System.out.print("\nQuery > ");
         }
-        while(!(rawQuery=kbd.nextLine().trim().toLowerCase()).equals(CMD_EXIT));
+        while(kbd.hasNextLine() &&
+            !(rawQuery=kbd.nextLine().trim().toLowerCase()).equals(CMD_EXIT));
 
         kbd.close();
     }
@@ -122,21 +143,21 @@ public class Query {
      *  and displays the results to the screen. */
     private void queryExecute() {
         Hashtable<String,Double> query = queryGen(rawQuery.split(" "));
-        Hashtable<Double,ArrayList<Integer>> res = similarity(title,query,null);
+        ArrayList<Integer> res = similarity(title, query, null, resCntTitle);
 
         // Recompute the similarity of the top 25 documents based on the results
         // of the title similarity comparisons
-        res = similarity(documents, query, getTopDocuments(resCntTitle, res));
+        res = similarity(documents, query, res, resCntDoc);
 
         System.out.printf("  %5s : %s\n", "Doc", "Title");
-        for(int id : getTopDocuments(resCntDoc, res))
+        for(int id : res)
             System.out.printf("  %5d : %s\n", id, titles.get(id));
     }
 
     /** Generates a vector based on the user query
      *  @param terms An array containing the tokens, unstemmed, to vectorize
      *  @return A vector that can be used for cosine similarity */
-    private Hashtable<String,Double> queryGen(String[] terms) {
+    static Hashtable<String,Double> queryGen(String[] terms) {
         Hashtable<String,Double> query = new Hashtable<>();
 
         // Add the terms to the query vector, using direct term frequency for
@@ -157,74 +178,124 @@ public class Query {
     }
 
     /**
-     *  Computes cosine similarity results for a given model and query
+     *  Computes cosine similarity results for a given model and query, and
+     *  ranks them. Documents are ranked by similarity, and documents with
+     *  equal similarities by the order they were given in (or by ID)
      *  @param model The model to compare the query vector against
      *  @param query The user query
-     *  @param ids The IDs to compute the similarity for
-     *  @return A hashtable of results, where keys are similarities, and the
-     *    values are a list of document IDs with that similarity
+     *  @param ids The IDs to compute the similarity for (or null to compare
+     *    against every document in the vsm)
+     *  @param k The number of top documents to fetch
+     *  @return A list of document IDs of the top-k similar documents
      */
-    private Hashtable<Double,ArrayList<Integer>> similarity(Model model,
-        Hashtable<String,Double> query, ArrayList<Integer> ids) {
-        // result is the final table of similarities and document IDs
-        // sim is for temporary storage of similarities
-        Hashtable<Double,ArrayList<Integer>> result = new Hashtable<>();
-        double sim;
-
+    private ArrayList<Integer> similarity(Model model,
+        Hashtable<String,Double> query, ArrayList<Integer> ids, int k) {
+        // result is the resulting list of document IDs
+        // q is the query, as a vector over the model's terms
+        // docs are the IDs of the documents being compared
+        // cost is the estimated number of components the query is scored
+        //   against: the documents holding each query term, or every
+        //   component of the query for each document given
+        // top is the best of the documents
+        ArrayList<Integer> result = new ArrayList<>();
+        WeightVector q = model.queryVector(query);
+        int[] docs;
+        long cost = 0;
+        TopK top;
+
+        // If no document ids were specified, we compare against the documents
+        // sharing a term with the query (see Model.candidates); otherwise, we
+        // only compare against those documents
         if (ids == null) {
-            // Since no document ids were specified, we compare against the
-            // entire vsm
-            for(int i=0; i<model.size(); i++) {
-                sim = Model.cosineSim(model.getDoc(i), query);
-                if (!result.containsKey(sim)) { result.put(sim,new ArrayList<>()); }
-                result.get(sim).add(i);
-            }
+            docs = model.candidates(q);
+            for(int j=0; j<q.size(); j++) { cost += model.docFrequency(q.id(j)); }
         }
         else {
-            // Since a list of ids was specified, we only compare against those
-            // documents in the model
-            for(int i=0; i<ids.size(); i++) {
-                sim = Model.cosineSim(model.getDoc(ids.get(i)), query);
-                if (!result.containsKey(sim)) { result.put(sim,new ArrayList<>()); }
-                result.get(sim).add(ids.get(i));
-            }
+            docs = new int[ids.size()];
+            for(int i=0; i<docs.length; i++) { docs[i] = ids.get(i); }
+            cost = (long)docs.length * q.size();
+        }
+
+        if (cost > PARALLEL_COST && ParallelLoader.THREADS > 1 && docs.length > GRAIN)
+            top = pool().invoke(new Scan(model, q, docs, 0, docs.length, k, ids == null));
+        else
+            top = scan(model, q, docs, 0, docs.length, k, ids == null);
+
+        for(int i : top.positions()) { result.add(docs[i]); }
+
+        // Every other document in the vsm scores 0; they follow the documents
+        // that scored higher in order of ID, as comparing against them all
+        // would have ranked them
+        if (ids == null) {
+            int[] seen = new int[result.size()];
+            for(int i=0; i<seen.length; i++) { seen[i] = result.get(i); }
+            Arrays.sort(seen);
+            for(int id=0; id<model.size() && result.size()<k; id++)
+                if (Arrays.binarySearch(seen, id) < 0) { result.add(id); }
         }
 
         return result;
     }
 
-    /** Accumulates the document IDs of those most similar to a query by looking
-     *  at a table generated as a result of similarity computations
-     *  @param k The number of top documents to fetch
-     *  @param table The hashtable containing similarity computation results
-     *  @return A list of document IDs of the top-k similar documents */
-    private ArrayList<Integer> getTopDocuments(int k,
-        Hashtable<Double,ArrayList<Integer>> table) {
-        // sim is used for tracking what key/list entry is being looked at
-        // result is the resulting list of document IDs to be looked at
-        // keys is a list of the similarities in the table in descending order
-        // tmp is a temporary storage variable for lists of IDs in the table
-        int sim[] = {0, 0};
-        ArrayList<Integer> result = new ArrayList<>(), tmp;
-        ArrayList<Double> keys = Collections.list(table.keys());
-        Collections.sort(keys, Collections.reverseOrder());
-
-        // While the number of requested top documents hasn't been found, we
-        // seek the next top document, or stop if there are no further documents
-        while(k > 0 && sim[0] < keys.size()) {
-            tmp = table.get(keys.get(sim[0]));
-
-            if (tmp.size() == sim[1]) {
-                sim[0]++; sim[1] = 0; continue;
-            }
+    /**
+     *  Scores a range of the documents being compared against a query, and
+     *  keeps the best of them
+     *  @param model The model the documents are in
+     *  @param q The query vector, over the model's terms
+     *  @param docs The IDs of the documents being compared
+     *  @param from The first position of the range
+     *  @param to The position after the last of the range
+     *  @param k The number of top documents to keep
+     *  @param positive Whether to only keep documents that score above 0
+     *  @return The best documents of the range, by position in 'docs'
+     */
+    private static TopK scan(Model model, WeightVector q, int[] docs, int from,
+        int to, int k, boolean positive) {
+        TopK top = new TopK(k);
+        double[] sims = model.cosineSim(Arrays.copyOfRange(docs, from, to), q);
+
+        for(int i=0; i<sims.length; i++)
+            if (!positive || sims[i] != 0.0) { top.offer(sims[i], from+i); }
 
-            result.add(tmp.get(sim[1]));
+        return top;
+    }
 
-            sim[1]++;
-            k--;
+    /** Scores a range of candidates in parallel, by splitting it in half until
+     *  the halves are no more than GRAIN candidates, and merging the top-k of
+     *  each half. (The arguments are those of scan) */
+    private static class Scan extends RecursiveTask<TopK> {
+        private static final long serialVersionUID = 1L;
+        private Model model;
+        private WeightVector q;
+        private int[] docs;
+        private int from, to, k;
+        private boolean positive;
+
+        Scan(Model model, WeightVector q, int[] docs, int from, int to, int k,
+            boolean positive) {
+            this.model = model; this.q = q; this.docs = docs;
+            this.from = from; this.to = to; this.k = k;
+            this.positive = positive;
         }
 
-        return result;
+        @Override
+        protected TopK compute() {
+            if (to-from <= GRAIN)
+                return scan(model, q, docs, from, to, k, positive);
+
+            int mid = (from+to) >>> 1;
+            Scan left = new Scan(model, q, docs, from, mid, k, positive);
+            left.fork();
+            TopK top = new Scan(model, q, docs, mid, to, k, positive).compute();
+            top.merge(left.join());
+            return top;
+        }
+    }
+
+    /** Returns the pool queries are scored in parallel on */
+    private static ForkJoinPool pool() {
+        if (pool == null) { pool = new ForkJoinPool(ParallelLoader.THREADS); }
+        return pool;
     }
 
     /** Prints helpful usage information about a specified command
@@ -268,6 +339,11 @@ public class Query {
                     System.out.println("  Result Generation:");
                     System.out.printf("    Phase 1|T Top-K: %d\n", resCntTitle);
                     System.out.printf("    Phase 2|D Top-K: %s\n", resCntDoc);
+                    System.out.printf("    Scoring: %s\n", Model.describeScoring());
+                    System.out.printf("    Term Doc Sets: %,.1f KB (T), %,.1f KB (D), in addition to the vectors\n",
+                        title.docSetBytes()/1024.0, documents.docSetBytes()/1024.0);
+                    System.out.printf("    Parallel: %d threads, above a cost of %,d\n",
+                        ParallelLoader.THREADS, PARALLEL_COST);
                     break;
                 // Document count parameter is being modified
                 case 3:
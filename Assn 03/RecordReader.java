@@ -0,0 +1,154 @@
+/**
+ * File:    RecordReader.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.1
+ * Description:
+ * RecordReader reads whitespace-separated words and numbers from a stream of
+ * text, such as the token records of a tiered index. Characters are pulled
+ * through a fixed buffer, and numbers are parsed straight out of it, so a
+ * record can be read one field at a time no matter how long its line is.
+ *
+ * The reader buffers ahead of what it returns, so the stream it wraps
+ * shouldn't be read directly once the RecordReader has been created.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ * Version 1.1 (18 October 2026)
+ * - Added longNumber, for offsets into an index's positions file
+ */
+
+// Import statements
+import java.io.Reader;
+import java.io.IOException;
+
+class RecordReader {
+  // in is the stream being read from
+  // buf holds the characters read ahead; pos is the next one to return, and
+  //   lim is the number in use
+  // word is a builder reused for every word returned
+  // peeked is a word that's been looked at but not consumed (or null)
+  private Reader in;
+  private char[] buf;
+  private int pos, lim;
+  private StringBuilder word;
+  private String peeked;
+
+  public RecordReader(Reader in) {
+    this.in = in;
+    buf = new char[1 << 16];
+    pos = lim = 0;
+    word = new StringBuilder();
+    peeked = null;
+  }
+
+  /**
+   * Reads the next word in the stream
+   * @return The word, or null if the end of the stream has been reached
+   */
+  public String word() throws IOException {
+    if (peeked != null) {
+      String res = peeked;
+      peeked = null;
+      return res;
+    }
+
+    int c = skip();
+    if (c < 0) { return null; }
+
+    word.setLength(0);
+    do {
+      word.append((char)c);
+      c = read();
+    } while(c >= 0 && !isSpace(c));
+
+    return word.toString();
+  }
+
+  /**
+   * Returns the next word in the stream without consuming it
+   * @return The word, or null if the end of the stream has been reached
+   */
+  public String peek() throws IOException {
+    if (peeked == null) { peeked = word(); }
+    return peeked;
+  }
+
+  /**
+   * Reads the next word in the stream as an integer
+   * @return The integer
+   * @throws IOException If the stream ended or the word isn't an integer
+   */
+  public int number() throws IOException {
+    long res = longNumber();
+    if (res != (int)res)
+      throw new IOException("Number out of range in the record stream");
+    return (int)res;
+  }
+
+  /**
+   * Reads the next word in the stream as a long integer
+   * @return The integer
+   * @throws IOException If the stream ended or the word isn't an integer
+   */
+  public long longNumber() throws IOException {
+    if (peeked != null) {
+      try { return Long.parseLong(word()); }
+      catch(NumberFormatException e) { throw new IOException(e.getMessage()); }
+    }
+
+    // sign is the sign of the number, and res its magnitude so far
+    int c = skip(), sign = 1;
+    long res = 0;
+    if (c == '-') { sign = -1; c = read(); }
+    if (c < '0' || c > '9')
+      throw new IOException("Expected a number in the record stream");
+
+    while(c >= '0' && c <= '9') {
+      res = res*10 + (c-'0');
+      c = read();
+    }
+
+    if (c >= 0 && !isSpace(c))
+      throw new IOException("Expected a number in the record stream");
+    return sign*res;
+  }
+
+  /**
+   * Reads the next word in the stream, which must be the one given
+   * @param expected The word that should come next
+   * @throws IOException If a different word (or none) came next
+   */
+  public void expect(String expected) throws IOException {
+    String w = word();
+    if (!expected.equals(w))
+      throw new IOException("Expected '"+expected+"' in the record stream, "+
+        "but read '"+w+"'");
+  }
+
+  /** Closes the underlying stream */
+  public void close() throws IOException { in.close(); }
+
+  /** Returns the next character, or -1 at the end of the stream */
+  private int read() throws IOException {
+    if (pos == lim) {
+      lim = in.read(buf, 0, buf.length);
+      pos = 0;
+      if (lim <= 0) { lim = 0; return -1; }
+    }
+
+    return buf[pos++];
+  }
+
+  /** Skips whitespace, returning the first other character (or -1) */
+  private int skip() throws IOException {
+    int c;
+    do { c = read(); } while(c >= 0 && isSpace(c));
+    return c;
+  }
+
+  /** Returns whether a character separates words */
+  private static boolean isSpace(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+  }
+}
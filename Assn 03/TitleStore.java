@@ -0,0 +1,152 @@
+/**
+ * File:    TitleStore.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.0
+ * Description:
+ * TitleStore holds the titles of the documents in a corpus. Instead of one
+ * String per document, titles are kept as UTF-8 bytes in a single contiguous
+ * arena, with an array of offsets marking where each title starts. A store
+ * that has been saved can be loaded by memory-mapping its file, after which
+ * titles are read straight out of the mapping.
+ *
+ * The format of a title file is as follows (all integers are 4-byte, big
+ * endian):
+ * -----------------------------------------------------------------------------
+ * <TITLE CNT> <OFFSET 0> <OFFSET 1> ... <OFFSET TITLE CNT> <UTF-8 BYTES>
+ * -----------------------------------------------------------------------------
+ * Title i spans bytes OFFSET i (inclusive) to OFFSET i+1 (exclusive) of the
+ * UTF-8 bytes that follow the offsets.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ */
+
+// Import statements
+import java.util.Arrays;
+import java.io.File;
+import java.io.IOException;
+import java.io.FileOutputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+class TitleStore {
+  // arena is the UTF-8 bytes of every title, back to back
+  // offsets is where each title starts in the arena (offsets[count] is the
+  //   number of bytes in use)
+  // count is the number of titles in the store
+  // mapped is the mapping of a loaded title file (null if not loaded)
+  private byte[] arena;
+  private int[] offsets;
+  private int count;
+  private MappedByteBuffer mapped;
+
+  public TitleStore() {
+    arena = new byte[1024];
+    offsets = new int[64];
+    count = 0;
+    mapped = null;
+  }
+
+  /** Returns the number of titles in the store */
+  public int size() { return count; }
+
+  /**
+   * Appends a title to the store, giving it the next document ID
+   * @param title The title to add
+   */
+  public void add(String title) {
+    // A mapped store is copied back into memory before it's changed
+    if (mapped != null) { unmap(); }
+
+    byte[] b = title.getBytes(StandardCharsets.UTF_8);
+    int end = offsets[count];
+
+    if (end + b.length > arena.length)
+      arena = Arrays.copyOf(arena, Math.max(arena.length*2, end+b.length));
+    if (count+2 > offsets.length)
+      offsets = Arrays.copyOf(offsets, offsets.length*2);
+
+    System.arraycopy(b, 0, arena, end, b.length);
+    offsets[++count] = end + b.length;
+  }
+
+  /**
+   * Returns the title of a document
+   * @param id The ID of the document
+   * @return The document's title
+   */
+  public String get(int id) {
+    if (id < 0 || id >= count)
+      throw new IndexOutOfBoundsException("No title for document "+id);
+
+    if (mapped == null)
+      return new String(arena, offsets[id], offsets[id+1]-offsets[id],
+        StandardCharsets.UTF_8);
+
+    // Read the title's bounds and bytes straight out of the mapping
+    int start = mapped.getInt(4+4*id), end = mapped.getInt(8+4*id);
+    byte[] b = new byte[end-start];
+    ByteBuffer view = mapped.duplicate();
+    view.position(4*(count+2)+start);
+    view.get(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  /** Removes every title from the store */
+  public void clear() {
+    arena = new byte[1024];
+    offsets = new int[64];
+    count = 0;
+    mapped = null;
+  }
+
+  /**
+   * Writes the store to a title file
+   * @param loc The location of the file
+   * @throws IOException If the file can't be written
+   */
+  public void save(String loc) throws IOException {
+    if (mapped != null) { unmap(); }
+
+    DataOutputStream w = new DataOutputStream(new BufferedOutputStream(
+      new FileOutputStream(loc), 1<<16));
+    w.writeInt(count);
+    for(int i=0; i<=count; i++) { w.writeInt(offsets[i]); }
+    w.write(arena, 0, offsets[count]);
+    w.close();
+  }
+
+  /**
+   * Replaces the contents of the store with a memory-mapping of a title file
+   * @param loc The location of the file
+   * @throws IOException If the file can't be read
+   */
+  public void load(String loc) throws IOException {
+    RandomAccessFile f = new RandomAccessFile(new File(loc), "r");
+    mapped = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, f.length());
+    f.close();
+
+    count = mapped.getInt(0);
+    arena = null;
+    offsets = null;
+  }
+
+  /** Copies a mapped store into memory, so that it can be appended to */
+  private void unmap() {
+    int base = 4*(count+2);
+
+    offsets = new int[Math.max(64, count+2)];
+    for(int i=0; i<=count; i++) { offsets[i] = mapped.getInt(4+4*i); }
+    arena = new byte[Math.max(1024, offsets[count])];
+    ByteBuffer view = mapped.duplicate();
+    view.position(base);
+    view.get(arena, 0, offsets[count]);
+    mapped = null;
+  }
+}
@@ -2,7 +2,7 @@
  * File:    Token.java
  * Author:  Matthew Morgan
  * Date:    28 March 2018
- * Version: 3.0
+ * Version: 3.4
  * Description:
  * Token represents a single Token that can be parsed in any corpus, containing
  * data regarding unstemmed variants, postings of the token in different
@@ -19,32 +19,66 @@
  * - Token no longer stores frequencies, as this information can be inferred
  * - Token no longer saves its own information - instead, toString() has been
  *   overriden, and a read function provided for reloading token data
+ * Version 3.1 (18 October 2026)
+ * - Postings are an IntObjMap of IntLists instead of a Hashtable of boxed
+ *   ArrayLists
+ * Version 3.2 (18 October 2026)
+ * - Postings are a packed Postings list, which appends positions as gaps in
+ *   a byte slab instead of keeping an IntList for every document
+ * - Added writeTo and readFrom, which stream a token's record field by field;
+ *   toString and read are now built on them
+ * - Tokens are stemmed by a reused, per-thread Stemmer (now in ../Common)
+ * Version 3.3 (18 October 2026)
+ * - Added a form of record without positions, which are written to a
+ *   separate positions stream instead and only read once they're needed
+ * Version 3.4 (18 October 2026)
+ * - Added a constructor for words that have already been stemmed
  */
 
 // Import statements
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Hashtable;
-import java.util.Collections;
+import java.io.Writer;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.StringReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.lang.Math;
 
 class Token {
+  // STEMMER holds a Stemmer for each thread that stems tokens, which is reused
+  //   for every word that thread stems
+  private static final ThreadLocal<Stemmer> STEMMER =
+    ThreadLocal.withInitial(Stemmer::new);
+
   // stem is the stemmed version of all the variants
   // variants is a set of all unstemmed words that the stem represents
-  // postings is a hashtable of lists for document postings
+  // postings is the list of documents the token occurs in, and its positions
   public String stem;
   public HashSet<String> variants;
-  public Hashtable<Integer,ArrayList<Integer>> postings;
+  public Postings postings;
 
   /** Instantiates a token, adding the provided string as a variant and setting
    *  its stem */
   public Token(String txt) {
     variants = new HashSet<>();
-    postings = new Hashtable<>();
+    postings = new Postings();
     stem = stemToken(txt);
     variants.add(txt);
   }
 
+  /**
+   * Instantiates a token for a word that has already been stemmed
+   * @param txt The word, which is added as a variant
+   * @param stem The stem of the word
+   */
+  public Token(String txt, String stem) {
+    variants = new HashSet<>();
+    postings = new Postings();
+    this.stem = stem;
+    variants.add(txt);
+  }
+
   /**
    * Takes a base token - that is, a single word - and stems it using the
    * Porter Stemmer algorithm. The following, supplementary rules are
@@ -55,12 +89,7 @@ class Token {
    * @return A string representing the stemmed token
    */
   public static String stemToken(String token) {
-    Stemmer s = new Stemmer();
-    String stemmed;
-
-    s.add(token.toCharArray(), token.length());
-    s.stem();
-    stemmed = s.toString();
+    String stemmed = STEMMER.get().stem(token);
 
     // Re-stem the token if the last character is a hyphen
     if (stemmed.charAt(stemmed.length()-1) == '-')
@@ -101,10 +130,7 @@ class Token {
    * @return The token's total frequency throughout the corpus
    */
   public int getFreq() {
-    int freq = 0;
-    for(int key : Collections.list(postings.keys()))
-      freq += postings.get(key).size();
-    return freq;
+    return postings.total();
   }
 
   /**
@@ -112,56 +138,139 @@ class Token {
    * @param doc The ID of the document
    * @return The document frequency of the token
    */
-  public int getFreq(int doc) { return postings.get(doc).size(); }
+  public int getFreq(int doc) {
+    int i = postings.indexOf(doc);
+    return (i < 0 ? 0 : postings.count(i));
+  }
 
   /**
    * Converts information about this token into a string; this string can then
    * be saved to a file or other location, and read back in as a token using
-   * the read function.
+   * the read function. (See writeTo for the format.)
+   * @return The token as a string
+   */
+  @Override
+  public String toString() {
+    StringWriter w = new StringWriter();
+
+    try { writeTo(w); }
+    catch(IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+
+    return w.toString();
+  }
+
+  /**
+   * Writes information about this token to a stream, one field at a time, so
+   * that no string of the whole record is ever built. The record can be read
+   * back in as a token using readFrom.
    * 
    * Token data is stored as follows:
-   * <TOK> [ <VAR> . <VAR> ] { <DOCS> [ <ID> <FRQ> <POST> . <GAP> ] [ . ] }
+   * <TOK> [ <VAR> . <VAR> ] <DOCS> { [ <ID> <FRQ> <POST> . <GAP> ] [ . ] }
    * 
    * <TOK> is the token's stemmed version, with <VAR> being the variants. The
    * number of documents in its posting list is <DOCS>, with each document
    * containing the id of the document, <ID>, frequency, <FRQ>, and postings
    * in the form of gaps. (IDs are also stored in gap notation.)
    * 
-   * @return The token as a string
+   * @param w The stream to write the token to
    */
-  @Override
-  public String toString() {
+  public void writeTo(Writer w) throws IOException {
     // prevDoc is the previous document that was written
     // prevPos is the previous posting that was written
-    // result is the final string that contains the token's data
-    // docList is a sorted list of the document IDs in the postings list
+    // pos is a buffer that each document's positions are decoded into
     int prevDoc = 0, prevPos = 0;
-    String result = stem+" [ ";
-    ArrayList<Integer> docList = Collections.list(postings.keys());
-    Collections.sort(docList);
-    
+    int[] pos = null;
+
     // Token variants
-    for(String variant : variants)
-      result += variant + " ";
+    w.write(stem);
+    w.write(" [ ");
+    for(String variant : variants) {
+      w.write(variant);
+      w.write(' ');
+    }
 
-    result += "] " + postings.size() + " {";
+    w.write("] ");
+    w.write(Integer.toString(postings.size()));
+    w.write(" {");
 
     // For every document in the token's postings list, write down the list of
-    // postings after the document id and frequency (as gaps)    
-    for(int doc : docList) {
+    // postings after the document id and frequency (as gaps)
+    for(int i=0; i<postings.size(); i++) {
+      int doc = postings.doc(i), cnt = postings.count(i);
       prevPos = 0;
 
-      result += " [ " + (doc-prevDoc) + " " + postings.get(doc).size() + " ";
+      w.write(" [ ");
+      w.write(Integer.toString(doc-prevDoc));
+      w.write(' ');
+      w.write(Integer.toString(cnt));
+      w.write(' ');
       prevDoc = doc;
-      for(int pos : postings.get(doc)) {
-        result += (pos-prevPos) + " ";
-        prevPos = pos;
+
+      pos = postings.positions(i, pos);
+      for(int k=0; k<cnt; k++) {
+        w.write(Integer.toString(pos[k]-prevPos));
+        w.write(' ');
+        prevPos = pos[k];
       }
-      result += "]";
+      w.write(']');
     }
 
-    result += " }";
-    return result;
+    w.write(" }");
+  }
+
+  /**
+   * Writes information about this token to a stream, leaving its positions
+   * out of the record; they're written to a separate positions stream, as
+   * the bytes Postings keeps them in. The record can be read back in as a
+   * token using readFrom, given the positions file.
+   * 
+   * Token data is stored as follows:
+   * <TOK> [ <VAR> . <VAR> ] <DOCS> <OFF> <LEN> { <ID> <FRQ> . <ID> <FRQ> }
+   * 
+   * <OFF> and <LEN> are the offset and length of the token's positions in
+   * the positions stream; the other fields are as in writeTo(Writer).
+   * 
+   * @param w The stream to write the token to
+   * @param pos The stream to write the token's positions to
+   * @param at The offset in the positions stream that they're written at
+   * @return The number of bytes written to the positions stream
+   */
+  public int writeTo(Writer w, OutputStream pos, long at) throws IOException {
+    // prevDoc is the previous document that was written
+    // bytes is the length of the token's positions
+    int prevDoc = 0, bytes = postings.writePositions(pos);
+
+    // Token variants
+    w.write(stem);
+    w.write(" [ ");
+    for(String variant : variants) {
+      w.write(variant);
+      w.write(' ');
+    }
+
+    w.write("] ");
+    w.write(Integer.toString(postings.size()));
+    w.write(' ');
+    w.write(Long.toString(at));
+    w.write(' ');
+    w.write(Integer.toString(bytes));
+    w.write(" {");
+
+    // For every document, write the id (as a gap) and frequency
+    for(int i=0; i<postings.size(); i++) {
+      int doc = postings.doc(i);
+      w.write(' ');
+      w.write(Integer.toString(doc-prevDoc));
+      w.write(' ');
+      w.write(Integer.toString(postings.count(i)));
+      prevDoc = doc;
+    }
+
+    w.write(" }");
+    return bytes;
   }
 
   /**
@@ -170,39 +279,80 @@ class Token {
    * @param tData The string containing the token's data to be loaded
    */
   public void read(String tData) {
-    // data contains the String, split at spaces
-    // pos is the current position in the array of data
+    try { readFrom(new RecordReader(new StringReader(tData))); }
+    catch(IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Reads the next token record from a stream, replacing this token's data.
+   * The record must hold its positions
+   * @param in The stream of token records, positioned at the start of one
+   * @throws IOException If the stream doesn't hold a valid record
+   */
+  public void readFrom(RecordReader in) throws IOException {
+    readFrom(in, null);
+  }
+
+  /**
+   * Reads the next token record from a stream, replacing this token's data.
+   * Postings are decoded one field at a time, straight into the token's
+   * postings list. If the record's positions are in a positions file, only
+   * the documents and frequencies are read, and the positions are left in
+   * the file until they're needed
+   * @param in The stream of token records, positioned at the start of one
+   * @param pos The positions file of the index (null if it has none)
+   * @throws IOException If the stream doesn't hold a valid record
+   */
+  public void readFrom(RecordReader in, FileChannel pos) throws IOException {
     // doc is the current document being read in
     // post is the current position in the document being read in
-    // L is the posting list currently being worked with/read in
-    String[] data = tData.split(" ");
-    int pos, doc=0, post;
-    ArrayList<Integer> L;
+    // word is temporary storage for the variants
+    int doc = 0, post;
+    String word;
 
     // Reset current token data
-    stem = "";
     variants.clear();
     postings.clear();
 
     // Stem and variants
-    stem = data[0];
-    for(pos=2; !data[pos].equals("]"); pos++)
-      variants.add(data[pos]);
-    pos += 4;
-    
-    // Document postings lists
-    for(int i=Integer.parseInt(data[pos-3]); i>0; i--) {
+    stem = in.word();
+    if (stem == null)
+      throw new IOException("Expected a token record in the index");
+    in.expect("[");
+    while(!(word = in.word()).equals("]"))
+      variants.add(word);
+
+    // Document postings lists, without positions if the record gives where
+    // they are in the positions file
+    int docs = in.number();
+    if (!"{".equals(in.peek())) {
+      if (pos == null)
+        throw new IOException("The positions file of the index is missing");
+
+      long off = in.longNumber();
+      postings.setSource(pos, off, in.number());
+      in.expect("{");
+      for(int i=docs; i>0; i--)
+        postings.addDoc((doc += in.number()), in.number());
+      in.expect("}");
+      return;
+    }
+
+    in.expect("{");
+    for(int i=docs; i>0; i--) {
       post = 0;
-      
-      // Add the document to the postings list
-      postings.put((doc += Integer.parseInt(data[pos])), new ArrayList<Integer>());
-      L = postings.get(doc);
-
-      // Read in each posting
-      for(int k=Integer.parseInt(data[++pos]); k>0; k--)
-        L.add((post += Integer.parseInt(data[++pos])));
-      
-      pos += 3;
+      in.expect("[");
+
+      // Read in each posting of the document
+      doc += in.number();
+      for(int k=in.number(); k>0; k--)
+        postings.add(doc, (post += in.number()));
+
+      in.expect("]");
     }
+    in.expect("}");
   }
-}
\ No newline at end of file
+}
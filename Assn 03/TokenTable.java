@@ -0,0 +1,94 @@
+/**
+ * File:    TokenTable.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.1
+ * Description:
+ * TokenTable is a dictionary of Tokens for one tier of the index, keyed by
+ * stem. Each token is given a dense integer ID in the order it's added; stems
+ * map to IDs through an ObjIntMap, and the tokens themselves are kept in a
+ * list indexed by ID. Iterating the table therefore visits tokens in the order
+ * they were first seen.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ * Version 1.1 (18 October 2026)
+ * - Added sort, which reorders the tokens and gives them new IDs
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.util.Comparator;
+
+class TokenTable {
+  // ids maps each stem to the ID of its token
+  // tokens is the list of tokens, indexed by ID
+  private ObjIntMap<String> ids;
+  private ArrayList<Token> tokens;
+
+  public TokenTable() {
+    ids = new ObjIntMap<>();
+    tokens = new ArrayList<>();
+  }
+
+  /** Returns the number of tokens in the table */
+  public int size() { return tokens.size(); }
+
+  /** Returns the tokens of the table, in the order they were added */
+  public ArrayList<Token> tokens() { return tokens; }
+
+  /**
+   * Returns the token with the given stem
+   * @param stem The stem to look up
+   * @return The token, or null if the table doesn't have it
+   */
+  public Token get(String stem) {
+    int id = ids.get(stem);
+    return (id < 0 ? null : tokens.get(id));
+  }
+
+  /**
+   * Adds a token to the table if no token with its stem exists yet
+   * @param t The token to add
+   * @return The token already in the table with the same stem, or null if 't'
+   *   was added
+   */
+  public Token putIfAbsent(Token t) {
+    int id = ids.putIfAbsent(t.stem, tokens.size());
+    if (id >= 0) { return tokens.get(id); }
+
+    tokens.add(t);
+    return null;
+  }
+
+  /** Shrinks the postings of every token to the space they use */
+  public void trim() {
+    for(Token t : tokens)
+      t.postings.trim();
+  }
+
+  /**
+   * Gives every document in the postings of the table a new ID
+   * @param map The new ID of each old ID
+   */
+  public void remap(int[] map) {
+    for(Token t : tokens)
+      t.postings.remap(map);
+  }
+
+  /**
+   * Reorders the tokens of the table, giving each the ID of its new place
+   * @param order The order to put the tokens in
+   */
+  public void sort(Comparator<Token> order) {
+    tokens.sort(order);
+    ids.clear();
+    for(int i=0; i<tokens.size(); i++) { ids.put(tokens.get(i).stem, i); }
+  }
+
+  /** Removes every token from the table */
+  public void clear() {
+    ids.clear();
+    tokens.clear();
+  }
+}
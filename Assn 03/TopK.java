@@ -0,0 +1,112 @@
+/**
+ * File:    TopK.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.0
+ * Description:
+ * TopK keeps the k best results offered to it, as a heap of scores paired with
+ * the position each result was offered at. A result beats another if its
+ * score is higher, or if the scores are equal and it was offered first, so
+ * the order of the results never depends on how they were gathered: several
+ * TopKs, each fed part of a list, merge into exactly the TopK that would have
+ * been fed the whole list.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ */
+
+// Import statements
+import java.util.Arrays;
+
+class TopK {
+  // k is the most results kept
+  // scores and pos are the heap of results kept, the worst at the root
+  // size is the number of results kept
+  private int k, size;
+  private double[] scores;
+  private int[] pos;
+
+  public TopK(int k) {
+    this.k = k;
+    scores = new double[Math.max(k, 1)];
+    pos = new int[scores.length];
+    size = 0;
+  }
+
+  /** Returns the number of results kept */
+  public int size() { return size; }
+
+  /**
+   * Offers a result, keeping it if it's among the k best so far
+   * @param score The score of the result
+   * @param p The position of the result in the list being ranked
+   */
+  public void offer(double score, int p) {
+    if (size < k) {
+      scores[size] = score;
+      pos[size] = p;
+      up(size++);
+    }
+    else if (k > 0 && beats(score, p, scores[0], pos[0])) {
+      scores[0] = score;
+      pos[0] = p;
+      down(0);
+    }
+  }
+
+  /**
+   * Offers every result kept by another TopK
+   * @param other The results to merge into these
+   */
+  public void merge(TopK other) {
+    for(int i=0; i<other.size; i++) { offer(other.scores[i], other.pos[i]); }
+  }
+
+  /** Returns the positions of the results kept, best first */
+  public int[] positions() {
+    Integer[] order = new Integer[size];
+    for(int i=0; i<size; i++) { order[i] = i; }
+    Arrays.sort(order, (a, b) -> {
+      int c = Double.compare(scores[b], scores[a]);
+      return (c != 0 ? c : Integer.compare(pos[a], pos[b]));
+    });
+
+    int[] res = new int[size];
+    for(int i=0; i<size; i++) { res[i] = pos[order[i]]; }
+    return res;
+  }
+
+  /** Returns whether result (s, p) beats result (t, q) */
+  private static boolean beats(double s, int p, double t, int q) {
+    int c = Double.compare(s, t);
+    return c > 0 || (c == 0 && p < q);
+  }
+
+  /** Moves the result at i up the heap until its parent is worse */
+  private void up(int i) {
+    while(i > 0) {
+      int parent = (i-1) >>> 1;
+      if (!beats(scores[parent], pos[parent], scores[i], pos[i])) { return; }
+      swap(i, parent);
+      i = parent;
+    }
+  }
+
+  /** Moves the result at i down the heap until its children are better */
+  private void down(int i) {
+    while(true) {
+      int worst = i, l = 2*i+1, r = l+1;
+      if (l < size && beats(scores[worst], pos[worst], scores[l], pos[l])) { worst = l; }
+      if (r < size && beats(scores[worst], pos[worst], scores[r], pos[r])) { worst = r; }
+      if (worst == i) { return; }
+      swap(i, worst);
+      i = worst;
+    }
+  }
+
+  /** Swaps the results at i and j */
+  private void swap(int i, int j) {
+    double s = scores[i]; scores[i] = scores[j]; scores[j] = s;
+    int p = pos[i]; pos[i] = pos[j]; pos[j] = p;
+  }
+}
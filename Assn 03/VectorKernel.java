@@ -0,0 +1,62 @@
+/**
+ * File:    VectorKernel.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.0
+ * Description:
+ * VectorKernel scores a dense block of candidate vectors with the Java Vector
+ * API (jdk.incubator.vector). The block is laid out term-major: row j holds
+ * the unscaled weight of query term j for every candidate, so each SIMD lane
+ * accumulates one candidate's dot product, term by term, in the same order
+ * and with the same separate multiply and add as the scalar loop in Model.
+ * The results are therefore identical to the scalar path.
+ *
+ * This class must be compiled and run with '--add-modules
+ * jdk.incubator.vector'; if the module isn't present at run-time, Model
+ * falls back to its scalar loop.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ */
+
+// Import statements
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorKernel {
+  // SPECIES is the widest vector shape the hardware supports for doubles
+  private static final VectorSpecies<Double> SPECIES =
+    DoubleVector.SPECIES_PREFERRED;
+
+  /** Returns the number of doubles scored per SIMD instruction */
+  public static int lanes() { return SPECIES.length(); }
+
+  /**
+   * Scores a block of candidates against the weights of a query
+   * @param block The unscaled candidate weights, with row j (of n values)
+   *   holding the weights of query term j
+   * @param factors The weight of each query term
+   * @param terms The number of query terms (rows in the block)
+   * @param n The number of candidates (columns in the block)
+   * @param out Receives the unscaled score of each candidate
+   */
+  public static void score(double[] block, double[] factors, int terms, int n,
+    double[] out) {
+    int bound = SPECIES.loopBound(n), c;
+
+    for(c=0; c<bound; c+=SPECIES.length()) {
+      DoubleVector acc = DoubleVector.zero(SPECIES);
+      for(int j=0; j<terms; j++)
+        acc = acc.add(DoubleVector.fromArray(SPECIES, block, j*n+c)
+          .mul(factors[j]));
+      acc.intoArray(out, c);
+    }
+
+    // Score the candidates that don't fill a whole vector
+    for(; c<n; c++) {
+      double res = 0.0;
+      for(int j=0; j<terms; j++) { res += block[j*n+c] * factors[j]; }
+      out[c] = res;
+    }
+  }
+}
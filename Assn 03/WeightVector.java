@@ -0,0 +1,438 @@
+/**
+ * File:    WeightVector.java
+ * Author:  Matthew Morgan
+ * Date:    18 October 2026
+ * Version: 1.1
+ * Description:
+ * WeightVector is a sparse document vector. Components are identified by the
+ * integer ID a Model assigns to each term, kept in ascending order, and their
+ * weights are stored at one of the precisions defined in Model:
+ * - PREC_DOUBLE: a double per component
+ * - PREC_FLOAT: a float per component
+ * - PREC_LIN8: an unsigned byte per component, linearly scaled so that 255
+ *   represents the vector's (or the term's) largest weight
+ * - PREC_LOG8: an unsigned byte per component, logarithmically scaled so that
+ *   0 represents the largest weight and every LOG_STEP codes halve it
+ *
+ * 8-bit vectors either carry a single scale for the whole vector, or share a
+ * table of per-term scales owned by their Model.
+ *
+ * ~~~ VERSION HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ * Version 1.1 (18 October 2026)
+ * - Added retain, which drops components without re-encoding the vector
+ */
+
+// Import statements
+import java.util.Arrays;
+
+class WeightVector {
+  // LOG_STEP is the number of log8 codes per halving of a weight
+  // LOG_TABLE maps a log8 code to the fraction of the scale it represents
+  public static final int LOG_STEP = 16;
+  public static final double[] LOG_TABLE = new double[256];
+  static {
+    for(int i=0; i<256; i++) { LOG_TABLE[i] = Math.pow(2.0, -1.0*i/LOG_STEP); }
+  }
+
+  // ids are the term IDs of the components, sorted ascending
+  // size is the number of components in use
+  // precision is the storage precision of the weights (see Model.PREC_*)
+  // wDbl, wFlt and wQnt hold the weights for the matching precision
+  // scale is the vector-wide scale of 8-bit weights
+  // termScales is the model's table of per-term scales (null if unused)
+  private int[] ids;
+  private int size;
+  private byte precision;
+  private double[] wDbl;
+  private float[] wFlt;
+  private byte[] wQnt;
+  private double scale;
+  private float[] termScales;
+
+  /** Instantiates an empty, double-precision vector */
+  public WeightVector() { this(4); }
+
+  /** Instantiates an empty, double-precision vector with room for 'cap'
+   *  components */
+  public WeightVector(int cap) {
+    ids = new int[Math.max(cap, 1)];
+    wDbl = new double[ids.length];
+    precision = Model.PREC_DOUBLE;
+    scale = 1.0;
+  }
+
+  // Accessors
+  public int size() { return size; }
+  public int id(int i) { return ids[i]; }
+  public byte getPrecision() { return precision; }
+
+  /**
+   * Finds the position of a term ID among the components of the vector
+   * @param id The term ID to search for
+   * @return The position of the component, or a negative value if absent
+   */
+  public int find(int id) { return Arrays.binarySearch(ids, 0, size, id); }
+
+  /**
+   * Decodes the weight of the component at the given position
+   * @param i The position of the component
+   * @return The weight of the component
+   */
+  public double weight(int i) {
+    switch(precision) {
+      case Model.PREC_FLOAT: return wFlt[i];
+      case Model.PREC_LIN8:  return (wQnt[i] & 0xFF) * scaleOf(i) / 255.0;
+      case Model.PREC_LOG8:  return LOG_TABLE[wQnt[i] & 0xFF] * scaleOf(i);
+      default:               return wDbl[i];
+    }
+  }
+
+  /**
+   * Returns the weight of a term in the vector
+   * @param id The term ID of the component
+   * @return The weight of the component, or 0 if the vector doesn't have it
+   */
+  public double get(int id) {
+    int i = find(id);
+    return (i < 0 ? 0.0 : weight(i));
+  }
+
+  /**
+   * Sets the weight of a component, inserting it if it doesn't exist. The
+   * vector is decoded to double precision first if it was compressed
+   * @param id The term ID of the component
+   * @param value The weight to give the component
+   */
+  public void put(int id, double value) {
+    if (precision != Model.PREC_DOUBLE) { encode(Model.PREC_DOUBLE, null); }
+
+    int i = find(id);
+    if (i >= 0) { wDbl[i] = value; return; }
+
+    // Shift the larger IDs up by one to make room for the new component
+    i = -(i+1);
+    grow(size+1);
+    System.arraycopy(ids, i, ids, i+1, size-i);
+    System.arraycopy(wDbl, i, wDbl, i+1, size-i);
+    ids[i] = id;
+    wDbl[i] = value;
+    size++;
+  }
+
+  /**
+   * Removes a component from the vector, if it exists
+   * @param id The term ID of the component to remove
+   */
+  public void remove(int id) {
+    int i = find(id);
+    if (i < 0) { return; }
+    if (precision != Model.PREC_DOUBLE) { encode(Model.PREC_DOUBLE, null); }
+
+    System.arraycopy(ids, i+1, ids, i, size-i-1);
+    System.arraycopy(wDbl, i+1, wDbl, i, size-i-1);
+    size--;
+  }
+
+  /**
+   * Appends a stored component to a vector being loaded, without keeping the
+   * components sorted; sort() must be called once all have been appended.
+   * For 8-bit precisions, the weight given is the raw code
+   * @param id The term ID of the component
+   * @param value The weight (or code) of the component
+   */
+  public void append(int id, double value) {
+    grow(size+1);
+    ids[size] = id;
+    switch(precision) {
+      case Model.PREC_FLOAT: wFlt[size] = (float)value; break;
+      case Model.PREC_LIN8:
+      case Model.PREC_LOG8:  wQnt[size] = (byte)value; break;
+      default:               wDbl[size] = value;
+    }
+    size++;
+  }
+
+  /**
+   * Replaces the term ID of every component, and re-sorts the components
+   * @param map The new ID of each old ID
+   */
+  public void relabel(int[] map) {
+    for(int i=0; i<size; i++) { ids[i] = map[ids[i]]; }
+    sort();
+  }
+
+  /** Sorts the components appended to the vector by term ID, and trims the
+   *  storage of the vector to its size */
+  public void sort() {
+    // Sort the positions of the components by term ID (packed beside the
+    // position in a long), then permute the weights with them
+    long[] order = new long[size];
+    for(int i=0; i<size; i++) { order[i] = ((long)ids[i] << 32) | i; }
+    Arrays.sort(order);
+
+    int[] nIds = new int[size];
+    for(int i=0; i<size; i++) { nIds[i] = (int)(order[i] >>> 32); }
+    ids = nIds;
+
+    switch(precision) {
+      case Model.PREC_FLOAT:
+        float[] nFlt = new float[size];
+        for(int i=0; i<size; i++) { nFlt[i] = wFlt[(int)order[i]]; }
+        wFlt = nFlt;
+        break;
+      case Model.PREC_LIN8:
+      case Model.PREC_LOG8:
+        byte[] nQnt = new byte[size];
+        for(int i=0; i<size; i++) { nQnt[i] = wQnt[(int)order[i]]; }
+        wQnt = nQnt;
+        break;
+      default:
+        double[] nDbl = new double[size];
+        for(int i=0; i<size; i++) { nDbl[i] = wDbl[(int)order[i]]; }
+        wDbl = nDbl;
+    }
+  }
+
+  /**
+   * Drops every component that isn't flagged to be kept. The weights that
+   * remain are left exactly as stored, at the vector's precision
+   * @param keep Whether to keep the component at each position
+   * @return The number of components dropped
+   */
+  public int retain(boolean[] keep) {
+    int n = 0;
+    for(int i=0; i<size; i++) {
+      if (!keep[i]) { continue; }
+      ids[n] = ids[i];
+      switch(precision) {
+        case Model.PREC_FLOAT: wFlt[n] = wFlt[i]; break;
+        case Model.PREC_LIN8:
+        case Model.PREC_LOG8:  wQnt[n] = wQnt[i]; break;
+        default:               wDbl[n] = wDbl[i];
+      }
+      n++;
+    }
+
+    int dropped = size-n;
+    size = n;
+    return dropped;
+  }
+
+  /** Normalizes the vector by its euclidean length, removing components that
+   *  end up 0.0. The vector is decoded to double precision first */
+  public void normalize() {
+    if (precision != Model.PREC_DOUBLE) { encode(Model.PREC_DOUBLE, null); }
+
+    // Compute the Euclidean length for the vector
+    double euc = 0.0;
+    for(int i=0; i<size; i++) { euc += wDbl[i]*wDbl[i]; }
+    euc = Math.sqrt(euc);
+
+    // Normalize the components, compacting away any that end up 0.0
+    int n = 0;
+    for(int i=0; i<size; i++) {
+      double w = wDbl[i]/euc;
+      if (w != 0.0) { ids[n] = ids[i]; wDbl[n] = w; n++; }
+    }
+    size = n;
+  }
+
+  /**
+   * Re-encodes the weights of the vector at another precision
+   * @param prec The precision to store the weights at (see Model.PREC_*)
+   * @param scales Per-term scales to encode 8-bit weights against, or null
+   *   to use a single scale for the whole vector
+   */
+  public void encode(byte prec, float[] scales) {
+    // Decode the current weights, then drop the current storage
+    double[] w = new double[size];
+    for(int i=0; i<size; i++) { w[i] = weight(i); }
+    wDbl = null; wFlt = null; wQnt = null;
+    ids = Arrays.copyOf(ids, size);
+    termScales = null;
+    scale = 1.0;
+    precision = prec;
+
+    switch(prec) {
+      case Model.PREC_FLOAT:
+        wFlt = new float[size];
+        for(int i=0; i<size; i++) { wFlt[i] = (float)w[i]; }
+        break;
+      case Model.PREC_LIN8:
+      case Model.PREC_LOG8:
+        wQnt = new byte[size];
+        termScales = scales;
+        if (scales == null) {
+          scale = 0.0;
+          for(int i=0; i<size; i++) { scale = Math.max(scale, w[i]); }
+        }
+        for(int i=0; i<size; i++) { wQnt[i] = (byte)quantize(prec, w[i], scaleOf(i)); }
+        break;
+      default:
+        wDbl = w;
+    }
+  }
+
+  /**
+   * Computes the dot product of this vector with a query vector of the same
+   * model. The weights of the vector are used as stored: 8-bit codes are only
+   * scaled once per vector (or once per query term for per-term scales)
+   * @param q The query vector, at double precision
+   * @return The dot product of the two vectors
+   */
+  public double dot(WeightVector q) {
+    double res = 0.0;
+    int a = 0, b = 0;
+
+    switch(precision) {
+      case Model.PREC_FLOAT:
+        while(a < size && b < q.size) {
+          if (ids[a] == q.ids[b]) { res += wFlt[a++] * q.wDbl[b++]; }
+          else if (ids[a] < q.ids[b]) { a++; } else { b++; }
+        }
+        return res;
+      case Model.PREC_LIN8:
+        while(a < size && b < q.size) {
+          if (ids[a] == q.ids[b]) {
+            res += (wQnt[a] & 0xFF) * (termScales == null ? q.wDbl[b] :
+              q.wDbl[b] * termScales[ids[a]]);
+            a++; b++;
+          }
+          else if (ids[a] < q.ids[b]) { a++; } else { b++; }
+        }
+        return res * scale / 255.0;
+      case Model.PREC_LOG8:
+        while(a < size && b < q.size) {
+          if (ids[a] == q.ids[b]) {
+            res += LOG_TABLE[wQnt[a] & 0xFF] * (termScales == null ? q.wDbl[b] :
+              q.wDbl[b] * termScales[ids[a]]);
+            a++; b++;
+          }
+          else if (ids[a] < q.ids[b]) { a++; } else { b++; }
+        }
+        return res * scale;
+      default:
+        while(a < size && b < q.size) {
+          if (ids[a] == q.ids[b]) { res += wDbl[a++] * q.wDbl[b++]; }
+          else if (ids[a] < q.ids[b]) { a++; } else { b++; }
+        }
+        return res;
+    }
+  }
+
+  /**
+   * Returns the value of a component as dot(...) multiplies it: the weight
+   * for double and float precisions, or the unscaled code for 8-bit ones
+   * @param i The position of the component
+   * @return The unscaled value of the component
+   */
+  public double unscaled(int i) {
+    switch(precision) {
+      case Model.PREC_FLOAT: return wFlt[i];
+      case Model.PREC_LIN8:  return wQnt[i] & 0xFF;
+      case Model.PREC_LOG8:  return LOG_TABLE[wQnt[i] & 0xFF];
+      default:               return wDbl[i];
+    }
+  }
+
+  /**
+   * Applies the vector-wide scale to a sum of unscaled products, exactly as
+   * dot(...) does
+   * @param res The sum of the unscaled components times the query weights
+   * @return The dot product
+   */
+  public double rescale(double res) {
+    switch(precision) {
+      case Model.PREC_LIN8: return res * scale / 255.0;
+      case Model.PREC_LOG8: return res * scale;
+      default:              return res;
+    }
+  }
+
+  /**
+   * Returns whether the vector is stored at a given precision and against a
+   * given table of per-term scales
+   * @param prec The precision (see Model.PREC_*)
+   * @param scales The table of per-term scales, or null
+   * @return True if both match the vector's storage
+   */
+  public boolean isEncoded(byte prec, float[] scales) {
+    return precision == prec && (prec < Model.PREC_LIN8 || termScales == scales);
+  }
+
+  /** Returns the raw stored value of a component: its weight, or its code
+   *  for 8-bit precisions. Used when writing the vector to a file */
+  public String stored(int i) {
+    switch(precision) {
+      case Model.PREC_FLOAT: return Float.toString(wFlt[i]);
+      case Model.PREC_LIN8:
+      case Model.PREC_LOG8:  return Integer.toString(wQnt[i] & 0xFF);
+      default:               return Double.toString(wDbl[i]);
+    }
+  }
+
+  /** Returns the vector-wide scale of 8-bit weights */
+  public double getScale() { return scale; }
+
+  /**
+   * Prepares an empty vector for loading stored 8-bit codes or floats
+   * @param prec The precision the codes were stored at
+   * @param s The vector-wide scale of the codes
+   * @param scales The model's per-term scales, or null
+   */
+  public void setStorage(byte prec, double s, float[] scales) {
+    precision = prec;
+    scale = s;
+    termScales = scales;
+    wDbl = null;
+    if (prec == Model.PREC_FLOAT) { wFlt = new float[ids.length]; }
+    else if (prec != Model.PREC_DOUBLE) { wQnt = new byte[ids.length]; }
+    else { wDbl = new double[ids.length]; }
+  }
+
+  /** Returns the number of bytes used by the weights of the vector */
+  public long weightBytes() {
+    switch(precision) {
+      case Model.PREC_FLOAT: return 4L*size;
+      case Model.PREC_LIN8:
+      case Model.PREC_LOG8:  return size;
+      default:               return 8L*size;
+    }
+  }
+
+  /** Returns the scale of the component at position i */
+  private double scaleOf(int i) {
+    return (termScales == null ? scale : termScales[ids[i]]);
+  }
+
+  /** Ensures there is room for 'cap' components in the vector */
+  private void grow(int cap) {
+    if (cap <= ids.length) { return; }
+    cap = Math.max(cap, ids.length*2);
+    ids = Arrays.copyOf(ids, cap);
+    if (wDbl != null) { wDbl = Arrays.copyOf(wDbl, cap); }
+    if (wFlt != null) { wFlt = Arrays.copyOf(wFlt, cap); }
+    if (wQnt != null) { wQnt = Arrays.copyOf(wQnt, cap); }
+  }
+
+  /**
+   * Quantizes a weight to an 8-bit code
+   * @param prec PREC_LIN8 or PREC_LOG8
+   * @param w The weight to quantize
+   * @param s The scale the weight is quantized against
+   * @return The code, from 0 to 255
+   */
+  public static int quantize(byte prec, double w, double s) {
+    if (s <= 0.0) { return 0; }
+
+    // Linear codes never round a present component down to 0; log codes
+    // saturate at the smallest representable fraction of the scale
+    if (prec == Model.PREC_LIN8)
+      return (int)Math.max(1, Math.min(255, Math.round(255.0*w/s)));
+    else {
+      double c = -LOG_STEP * Math.log(w/s) / Math.log(2.0);
+      return (int)Math.max(0, Math.min(255, Math.round(c)));
+    }
+  }
+}
@@ -0,0 +1,18 @@
+#!/bin/sh
+# Regression check: loads the provided vector space models (Data/vsmTitle,
+# whose titles are appended after its vectors, and Data/vsmData), runs a
+# title query against them, and fails if either doesn't load.
+# Usage: ./check-load.sh [class-dir]   (default: out, as in the README)
+cd "$(dirname "$0")/Data" || exit 1
+CP="${1:-out}"
+case "$CP" in /*) ;; *) CP="../$CP" ;; esac
+
+OUT=$(printf 'emma\n!exit\n' | java -cp "$CP" Corpus vsmTitle vsmData 2>&1)
+STATUS=$?
+
+if [ $STATUS -ne 0 ] || ! printf '%s\n' "$OUT" | grep -q ': Emma$'; then
+  printf '%s\n' "$OUT" | tail -n 5
+  echo "FAIL: Data/vsmTitle and Data/vsmData didn't load (status $STATUS)"
+  exit 1
+fi
+echo "OK: Data/vsmTitle and Data/vsmData load"
@@ -0,0 +1,407 @@
+/*
+ * File:    DocSet.java
+ * Version: 1.2
+ * Author:  Matthew Morgan
+ * Description:
+ * DocSet is a set of document IDs stored as a hybrid of sorted arrays and
+ * bitmaps, after Roaring bitmaps (Chambi et al., 2016). IDs are split by their
+ * upper 16 bits into chunks of 65,536, and each chunk that holds any IDs gets
+ * a container of its lower 16 bits:
+ * - an array container, a sorted char[] of the IDs, while the chunk holds at
+ *   most ARRAY_MAX of them (two bytes per ID)
+ * - a bitmap container, 1024 longs with a bit for every ID of the chunk, once
+ *   it holds more (a fixed 8 KB, or an eighth of a byte per possible ID)
+ * As a list of a term's documents, a sparse term takes two bytes per ID
+ * rather than the four of an int[], and a term in a large fraction of the
+ * documents takes a bit per document. Intersections and unions work
+ * container by container, according to the kinds of containers they meet:
+ * - two arrays are merged, or the shorter is galloped through the longer when
+ *   their sizes are far apart
+ * - an array and a bitmap are intersected by probing the bitmap for each ID
+ *   of the array
+ * - two bitmaps are ANDed or ORed a word at a time
+ *
+ * ~~~ CHANGE HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ * Version 1.1 (19 October 2026)
+ * - Removed the intersection and the benchmark main, which nothing used
+ * Version 1.2 (19 October 2026)
+ * - Restored the intersection (and), and added of, which builds a set from a
+ *   list of IDs
+ * - The IDs of a set can be listed a container at a time (see list), so a
+ *   set can be walked without copying all of it to an int[]
+ */
+
+// Import statements
+import java.util.Arrays;
+
+public class DocSet {
+    // ARRAY_MAX is the most IDs an array container holds before it's turned
+    //   into a bitmap; at that size both take 8 KB
+    // WORDS is the number of longs in a bitmap container
+    private static final int ARRAY_MAX = 4096, WORDS = 1024;
+
+    // keys are the upper 16 bits of each container's IDs, in ascending order
+    // arrays and bitmaps hold each container; exactly one of the two is set
+    // cards are the number of IDs in each container
+    // n is the number of containers in use
+    private char[] keys;
+    private char[][] arrays;
+    private long[][] bitmaps;
+    private int[] cards;
+    private int n;
+
+    public DocSet() {
+        keys = new char[4];
+        arrays = new char[4][];
+        bitmaps = new long[4][];
+        cards = new int[4];
+        n = 0;
+    }
+
+    /**
+     * Builds a set from a list of IDs
+     * @param ids The IDs, in ascending order
+     * @return The set
+     */
+    public static DocSet of(int[] ids) {
+        DocSet res = new DocSet();
+        for(int id : ids) { res.add(id); }
+        res.trim();
+        return res;
+    }
+
+    /** Returns the number of IDs in the set */
+    public int cardinality() {
+        int res = 0;
+        for(int c=0; c<n; c++) { res += cards[c]; }
+        return res;
+    }
+
+    /**
+     * Returns whether an ID is in the set
+     * @param id The ID to look for
+     * @return True if the set has the ID
+     */
+    public boolean contains(int id) {
+        int c = find((char)(id >>> 16));
+        if (c < 0) { return false; }
+
+        char lo = (char)id;
+        if (bitmaps[c] != null)
+            return (bitmaps[c][lo >>> 6] & (1L << lo)) != 0;
+        return Arrays.binarySearch(arrays[c], 0, cards[c], lo) >= 0;
+    }
+
+    /**
+     * Adds an ID to the set. IDs may be added in any order, but adding them in
+     * ascending order only ever appends to the last container
+     * @param id The ID to add (which may not be negative)
+     */
+    public void add(int id) {
+        char hi = (char)(id >>> 16), lo = (char)id;
+        int c = (n > 0 && keys[n-1] == hi ? n-1 : find(hi));
+
+        // Make an empty array container for the chunk if it has none yet
+        if (c < 0) {
+            c = -(c+1);
+            grow(n+1);
+            System.arraycopy(keys, c, keys, c+1, n-c);
+            System.arraycopy(arrays, c, arrays, c+1, n-c);
+            System.arraycopy(bitmaps, c, bitmaps, c+1, n-c);
+            System.arraycopy(cards, c, cards, c+1, n-c);
+            keys[c] = hi;
+            arrays[c] = new char[4];
+            bitmaps[c] = null;
+            cards[c] = 0;
+            n++;
+        }
+
+        if (bitmaps[c] != null) {
+            long bit = 1L << lo, word = bitmaps[c][lo >>> 6];
+            if ((word & bit) == 0) { bitmaps[c][lo >>> 6] = word | bit; cards[c]++; }
+            return;
+        }
+
+        // Find where the ID goes in the array, appending when it's the largest
+        char[] a = arrays[c];
+        int card = cards[c], i = (card == 0 || a[card-1] < lo ? -(card+1) :
+            Arrays.binarySearch(a, 0, card, lo));
+        if (i >= 0) { return; }
+
+        if (card == ARRAY_MAX) {
+            bitmaps[c] = toBitmap(a, card);
+            arrays[c] = null;
+            bitmaps[c][lo >>> 6] |= 1L << lo;
+            cards[c]++;
+            return;
+        }
+
+        i = -(i+1);
+        if (card == a.length)
+            a = arrays[c] = Arrays.copyOf(a, Math.min(ARRAY_MAX, card*2));
+        System.arraycopy(a, i, a, i+1, card-i);
+        a[i] = lo;
+        cards[c]++;
+    }
+
+    /** Returns the IDs of the set, in ascending order */
+    public int[] toArray() {
+        int[] res = new int[cardinality()];
+        int k = 0;
+
+        for(int c=0; c<n; c++) {
+            int base = keys[c] << 16;
+            if (bitmaps[c] == null)
+                for(int i=0; i<cards[c]; i++) { res[k++] = base | arrays[c][i]; }
+            else
+                for(int w=0; w<WORDS; w++)
+                    for(long word = bitmaps[c][w]; word != 0; word &= word-1)
+                        res[k++] = base | (w << 6) | Long.numberOfTrailingZeros(word);
+        }
+
+        return res;
+    }
+
+    /** Returns the number of containers in the set */
+    public int containers() { return n; }
+
+    /**
+     * Lists the IDs of one container of the set, in ascending order; listing
+     * every container in turn lists the whole set in ascending order
+     * @param c The index of the container
+     * @param out The array to list the IDs in, which must have room for
+     *   65,536 of them
+     * @return The number of IDs listed
+     */
+    public int list(int c, int[] out) {
+        int base = keys[c] << 16, k = 0;
+        if (bitmaps[c] == null)
+            for(int i=0; i<cards[c]; i++) { out[k++] = base | arrays[c][i]; }
+        else
+            for(int w=0; w<WORDS; w++)
+                for(long word = bitmaps[c][w]; word != 0; word &= word-1)
+                    out[k++] = base | (w << 6) | Long.numberOfTrailingZeros(word);
+        return k;
+    }
+
+    /** Returns the number of bytes the containers of the set take */
+    public long bytes() {
+        long res = 3L*keys.length + 4L*cards.length;
+        for(int c=0; c<n; c++)
+            res += (bitmaps[c] != null ? 8L*WORDS : 2L*arrays[c].length);
+        return res;
+    }
+
+    /** Shrinks the array containers, and the lists of containers, to size */
+    public void trim() {
+        for(int c=0; c<n; c++)
+            if (arrays[c] != null && arrays[c].length > cards[c])
+                arrays[c] = Arrays.copyOf(arrays[c], Math.max(1, cards[c]));
+
+        keys = Arrays.copyOf(keys, n);
+        arrays = Arrays.copyOf(arrays, n);
+        bitmaps = Arrays.copyOf(bitmaps, n);
+        cards = Arrays.copyOf(cards, n);
+    }
+
+    /**
+     * Computes the intersection of two sets
+     * @param a The first set
+     * @param b The second set
+     * @return A new set of the IDs in both
+     */
+    public static DocSet and(DocSet a, DocSet b) {
+        DocSet res = new DocSet();
+        int i = 0, j = 0;
+
+        // Only chunks with containers in both sets can intersect
+        while(i < a.n && j < b.n) {
+            if (a.keys[i] < b.keys[j]) { i++; continue; }
+            if (a.keys[i] > b.keys[j]) { j++; continue; }
+
+            long[] ba = a.bitmaps[i], bb = b.bitmaps[j];
+            if (ba != null && bb != null) {
+                long[] bits = new long[WORDS];
+                int card = 0;
+                for(int w=0; w<WORDS; w++)
+                    card += Long.bitCount(bits[w] = ba[w] & bb[w]);
+                if (card > ARRAY_MAX) { res.append(a.keys[i], null, bits, card); }
+                else if (card > 0) { res.append(a.keys[i], toArray(bits, card), null, card); }
+            }
+            else if (ba != null || bb != null) {
+                // Probe the bitmap for every ID of the array
+                char[] arr = (ba == null ? a.arrays[i] : b.arrays[j]), out;
+                long[] bits = (ba == null ? bb : ba);
+                int len = (ba == null ? a.cards[i] : b.cards[j]), card = 0;
+                out = new char[len];
+                for(int k=0; k<len; k++)
+                    if ((bits[arr[k] >>> 6] & (1L << arr[k])) != 0) { out[card++] = arr[k]; }
+                if (card > 0) { res.append(a.keys[i], out, null, card); }
+            }
+            else {
+                char[] out = new char[Math.min(a.cards[i], b.cards[j])];
+                int card = intersect(a.arrays[i], a.cards[i], b.arrays[j], b.cards[j], out);
+                if (card > 0) { res.append(a.keys[i], out, null, card); }
+            }
+
+            i++; j++;
+        }
+
+        return res;
+    }
+
+    /**
+     * Computes the union of two sets
+     * @param a The first set
+     * @param b The second set
+     * @return A new set of the IDs in either
+     */
+    public static DocSet or(DocSet a, DocSet b) {
+        DocSet res = new DocSet();
+        int i = 0, j = 0;
+
+        while(i < a.n || j < b.n) {
+            // Chunks with a container in only one set are copied over
+            if (j == b.n || (i < a.n && a.keys[i] < b.keys[j])) {
+                res.append(a.keys[i], copy(a.arrays[i], a.cards[i]),
+                    copy(a.bitmaps[i]), a.cards[i]);
+                i++; continue;
+            }
+            if (i == a.n || b.keys[j] < a.keys[i]) {
+                res.append(b.keys[j], copy(b.arrays[j], b.cards[j]),
+                    copy(b.bitmaps[j]), b.cards[j]);
+                j++; continue;
+            }
+
+            long[] ba = a.bitmaps[i], bb = b.bitmaps[j];
+            if (ba == null && bb == null && a.cards[i] + b.cards[j] <= ARRAY_MAX) {
+                char[] out = new char[a.cards[i] + b.cards[j]];
+                int card = union(a.arrays[i], a.cards[i], b.arrays[j], b.cards[j], out);
+                res.append(a.keys[i], out, null, card);
+            }
+            else {
+                // OR the containers into a bitmap, turning arrays into bits
+                long[] bits = (ba != null ? ba.clone() : toBitmap(a.arrays[i], a.cards[i]));
+                int card = 0;
+                if (bb != null)
+                    for(int w=0; w<WORDS; w++) { bits[w] |= bb[w]; }
+                else
+                    for(int k=0; k<b.cards[j]; k++) { bits[b.arrays[j][k] >>> 6] |= 1L << b.arrays[j][k]; }
+                for(int w=0; w<WORDS; w++) { card += Long.bitCount(bits[w]); }
+
+                if (card > ARRAY_MAX) { res.append(a.keys[i], null, bits, card); }
+                else { res.append(a.keys[i], toArray(bits, card), null, card); }
+            }
+
+            i++; j++;
+        }
+
+        return res;
+    }
+
+    /**
+     * Computes the union of several sets, two at a time
+     * @param sets The sets
+     * @return A new set of the IDs in any of them
+     */
+    public static DocSet or(DocSet... sets) {
+        DocSet res = new DocSet();
+        for(DocSet s : sets) { res = or(res, s); }
+        return res;
+    }
+
+    /** Appends a container, whose key must be larger than any in the set */
+    private void append(char key, char[] arr, long[] bits, int card) {
+        grow(n+1);
+        keys[n] = key;
+        arrays[n] = arr;
+        bitmaps[n] = bits;
+        cards[n] = card;
+        n++;
+    }
+
+    /** Returns the position of a container by key, or -(insertion point)-1 */
+    private int find(char key) { return Arrays.binarySearch(keys, 0, n, key); }
+
+    /** Ensures there's room for 'cap' containers */
+    private void grow(int cap) {
+        if (cap <= keys.length) { return; }
+        cap = Math.max(cap, keys.length*2);
+        keys = Arrays.copyOf(keys, cap);
+        arrays = Arrays.copyOf(arrays, cap);
+        bitmaps = Arrays.copyOf(bitmaps, cap);
+        cards = Arrays.copyOf(cards, cap);
+    }
+
+    /** Sets the bits of the first 'card' IDs of an array container */
+    private static long[] toBitmap(char[] arr, int card) {
+        long[] bits = new long[WORDS];
+        for(int k=0; k<card; k++) { bits[arr[k] >>> 6] |= 1L << arr[k]; }
+        return bits;
+    }
+
+    /** Lists the set bits of a bitmap container, of which there are 'card' */
+    private static char[] toArray(long[] bits, int card) {
+        char[] res = new char[card];
+        int k = 0;
+        for(int w=0; w<WORDS; w++)
+            for(long word = bits[w]; word != 0; word &= word-1)
+                res[k++] = (char)((w << 6) | Long.numberOfTrailingZeros(word));
+        return res;
+    }
+
+    /** Copies the in-use part of an array container (or returns null) */
+    private static char[] copy(char[] arr, int card) {
+        return (arr == null ? null : Arrays.copyOf(arr, Math.max(1, card)));
+    }
+
+    /** Copies a bitmap container (or returns null) */
+    private static long[] copy(long[] bits) {
+        return (bits == null ? null : bits.clone());
+    }
+
+    /**
+     * Intersects two sorted arrays. When one is much shorter than the other,
+     * each of its values is searched for by galloping through the longer one
+     * @return The number of values written to 'out'
+     */
+    private static int intersect(char[] a, int na, char[] b, int nb, char[] out) {
+        if (na > nb) { return intersect(b, nb, a, na, out); }
+        int card = 0, j = 0;
+
+        if (nb > 32*na) {
+            for(int i=0; i<na && j<nb; i++) {
+                // Gallop to a range that must hold a[i], then search it
+                int step = 1;
+                while(j+step < nb && b[j+step] < a[i]) { j += step; step <<= 1; }
+                int k = Arrays.binarySearch(b, j, Math.min(nb, j+step+1), a[i]);
+                if (k >= 0) { out[card++] = a[i]; j = k+1; } else { j = -(k+1); }
+            }
+            return card;
+        }
+
+        for(int i=0; i<na && j<nb; ) {
+            if (a[i] == b[j]) { out[card++] = a[i]; i++; j++; }
+            else if (a[i] < b[j]) { i++; } else { j++; }
+        }
+        return card;
+    }
+
+    /**
+     * Merges two sorted arrays, without repeating values in both
+     * @return The number of values written to 'out'
+     */
+    private static int union(char[] a, int na, char[] b, int nb, char[] out) {
+        int card = 0, i = 0, j = 0;
+
+        while(i < na && j < nb) {
+            if (a[i] == b[j]) { out[card++] = a[i]; i++; j++; }
+            else if (a[i] < b[j]) { out[card++] = a[i++]; }
+            else { out[card++] = b[j++]; }
+        }
+        while(i < na) { out[card++] = a[i++]; }
+        while(j < nb) { out[card++] = b[j++]; }
+        return card;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * File:    IntList.java
+ * Version: 1.0
+ * Author:  Matthew Morgan
+ * Description:
+ * IntList is a growable list of ints, backed by a plain int[]. It replaces
+ * ArrayList<Integer> wherever postings or IDs are accumulated, so that each
+ * element costs four bytes instead of a boxed Integer and a reference.
+ *
+ * ~~~ CHANGE HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ */
+
+// Import statements
+import java.util.Arrays;
+
+public class IntList {
+    // data is the backing array; only the first 'size' entries are in use
+    private int[] data;
+    private int size;
+
+    public IntList() { this(4); }
+    public IntList(int cap) { data = new int[Math.max(cap, 1)]; size = 0; }
+
+    // Accessors
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public int get(int i) { return data[i]; }
+    public int last() { return data[size-1]; }
+
+    // Mutators
+    public void set(int i, int val) { data[i] = val; }
+    public void clear() { size = 0; }
+
+    /**
+     * Appends a value to the end of the list
+     * @param val The value to append
+     */
+    public void add(int val) {
+        if (size == data.length)
+            data = Arrays.copyOf(data, data.length + (data.length >> 1) + 1);
+        data[size++] = val;
+    }
+
+    /**
+     * Finds a value in the list, which must be sorted in ascending order
+     * @param val The value to search for
+     * @return The position of the value, or a negative value if absent
+     */
+    public int binarySearch(int val) { return Arrays.binarySearch(data, 0, size, val); }
+
+    /** Sorts the list in ascending order */
+    public void sort() { Arrays.sort(data, 0, size); }
+
+    /** Shrinks the backing array to the size of the list */
+    public void trim() { if (data.length > size) { data = Arrays.copyOf(data, size); } }
+
+    /** Returns a copy of the list as an array */
+    public int[] toArray() { return Arrays.copyOf(data, size); }
+}
@@ -0,0 +1,168 @@
+/*
+ * File:    IntObjMap.java
+ * Version: 1.0
+ * Author:  Matthew Morgan
+ * Description:
+ * IntObjMap is an open-addressing hash map from ints to objects. Keys are
+ * kept in a plain int[] and probed linearly, so lookups neither box the key
+ * nor take a lock the way Hashtable<Integer,V> does. Like Hashtable, null
+ * values can't be stored.
+ *
+ * ~~~ CHANGE HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class IntObjMap<V> {
+    // keys and vals are the slots of the table; a null value marks an empty slot
+    // size is the number of entries, and mask is the table length minus one
+    private int[] keys;
+    private Object[] vals;
+    private int size, mask;
+
+    public IntObjMap() { this(8); }
+
+    /** Instantiates a map with room for 'cap' entries before it grows */
+    public IntObjMap(int cap) {
+        int len = 8;
+        while(len < cap*2) { len <<= 1; }
+        keys = new int[len];
+        vals = new Object[len];
+        mask = len-1;
+        size = 0;
+    }
+
+    // Accessors
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public boolean containsKey(int key) { return vals[slot(key)] != null; }
+
+    /**
+     * Returns the value stored for a key
+     * @param key The key to look up
+     * @return The value, or null if the key isn't in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) { return (V)vals[slot(key)]; }
+
+    /**
+     * Stores a value for a key, replacing any value it already had
+     * @param key The key to store the value under
+     * @param val The value (which may not be null)
+     * @return The previous value of the key, or null if it had none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V val) {
+        int i = slot(key);
+        V prev = (V)vals[i];
+
+        keys[i] = key;
+        vals[i] = val;
+        if (prev == null && ++size*2 > keys.length) { grow(); }
+        return prev;
+    }
+
+    /**
+     * Stores a value for a key only if the key isn't in the map yet
+     * @param key The key to store the value under
+     * @param val The value (which may not be null)
+     * @return The value already stored for the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(int key, V val) {
+        int i = slot(key);
+        if (vals[i] != null) { return (V)vals[i]; }
+
+        keys[i] = key;
+        vals[i] = val;
+        if (++size*2 > keys.length) { grow(); }
+        return null;
+    }
+
+    /**
+     * Removes a key from the map. Entries after it in its probe run are
+     * shifted back, so no tombstones are left behind
+     * @param key The key to remove
+     * @return The value that was stored for the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int i = slot(key);
+        V prev = (V)vals[i];
+        if (prev == null) { return null; }
+
+        vals[i] = null;
+        size--;
+
+        // Move back every following entry whose home slot isn't between the
+        // hole and its current slot
+        for(int j=(i+1)&mask; vals[j]!=null; j=(j+1)&mask) {
+            int home = hash(keys[j]) & mask;
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                keys[i] = keys[j];
+                vals[i] = vals[j];
+                vals[j] = null;
+                i = j;
+            }
+        }
+
+        return prev;
+    }
+
+    /** Removes every entry from the map */
+    public void clear() {
+        Arrays.fill(vals, null);
+        size = 0;
+    }
+
+    /** Returns the keys of the map, in no particular order */
+    public int[] keys() {
+        int[] res = new int[size];
+        int n = 0;
+        for(int i=0; i<vals.length; i++)
+            if (vals[i] != null) { res[n++] = keys[i]; }
+        return res;
+    }
+
+    /** Returns the values of the map, in the same order as keys() */
+    @SuppressWarnings("unchecked")
+    public ArrayList<V> values() {
+        ArrayList<V> res = new ArrayList<>(size);
+        for(int i=0; i<vals.length; i++)
+            if (vals[i] != null) { res.add((V)vals[i]); }
+        return res;
+    }
+
+    /** Returns the slot holding a key, or the empty slot it would go in */
+    private int slot(int key) {
+        int i = hash(key) & mask;
+        while(vals[i] != null && keys[i] != key) { i = (i+1) & mask; }
+        return i;
+    }
+
+    /** Doubles the size of the table, re-inserting every entry */
+    private void grow() {
+        int[] oKeys = keys;
+        Object[] oVals = vals;
+
+        keys = new int[oKeys.length*2];
+        vals = new Object[oVals.length*2];
+        mask = keys.length-1;
+
+        for(int i=0; i<oVals.length; i++)
+            if (oVals[i] != null) {
+                int s = slot(oKeys[i]);
+                keys[s] = oKeys[i];
+                vals[s] = oVals[i];
+            }
+    }
+
+    /** Scrambles a key so that sequential keys don't cluster in the table */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * File:    ObjIntMap.java
+ * Version: 1.0
+ * Author:  Matthew Morgan
+ * Description:
+ * ObjIntMap is an open-addressing hash map from objects to ints. Values are
+ * kept in a plain int[], so counts and IDs are never boxed, and no lock is
+ * taken the way Hashtable<K,Integer> does. A lookup of a missing key returns
+ * the 'missing' value the map was created with, rather than null.
+ *
+ * ~~~ CHANGE HISTORY ~~~
+ * Version 1.0 (18 October 2026)
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class ObjIntMap<K> {
+    // keys and vals are the slots of the table; a null key marks an empty slot
+    // size is the number of entries, and mask is the table length minus one
+    // missing is the value returned for keys that aren't in the map
+    private Object[] keys;
+    private int[] vals;
+    private int size, mask;
+    private final int missing;
+
+    public ObjIntMap() { this(-1); }
+
+    /** Instantiates a map that returns 'missing' for absent keys */
+    public ObjIntMap(int missing) {
+        keys = new Object[16];
+        vals = new int[16];
+        mask = 15;
+        size = 0;
+        this.missing = missing;
+    }
+
+    // Accessors
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public boolean containsKey(K key) { return keys[slot(key)] != null; }
+
+    /**
+     * Returns the value stored for a key
+     * @param key The key to look up
+     * @return The value, or the map's missing value if the key isn't present
+     */
+    public int get(K key) {
+        int i = slot(key);
+        return (keys[i] == null ? missing : vals[i]);
+    }
+
+    /**
+     * Stores a value for a key, replacing any value it already had
+     * @param key The key to store the value under (which may not be null)
+     * @param val The value
+     * @return The previous value, or the map's missing value if there was none
+     */
+    public int put(K key, int val) {
+        int i = slot(key), prev = (keys[i] == null ? missing : vals[i]);
+
+        if (keys[i] == null) {
+            keys[i] = key;
+            vals[i] = val;
+            if (++size*2 > keys.length) { grow(); }
+        }
+        else
+            vals[i] = val;
+
+        return prev;
+    }
+
+    /**
+     * Stores a value for a key only if the key isn't in the map yet
+     * @param key The key to store the value under (which may not be null)
+     * @param val The value
+     * @return The value already stored, or the map's missing value if there
+     *   was none
+     */
+    public int putIfAbsent(K key, int val) {
+        int i = slot(key);
+        if (keys[i] != null) { return vals[i]; }
+
+        keys[i] = key;
+        vals[i] = val;
+        if (++size*2 > keys.length) { grow(); }
+        return missing;
+    }
+
+    /**
+     * Adds to the value of a key, which starts from 0 if it isn't present
+     * @param key The key whose value is incremented
+     * @param delta The amount to add
+     * @return The value of the key after the increment
+     */
+    public int increment(K key, int delta) {
+        int i = slot(key);
+
+        if (keys[i] == null) {
+            keys[i] = key;
+            vals[i] = delta;
+            if (++size*2 > keys.length) { grow(); }
+            return delta;
+        }
+
+        return (vals[i] += delta);
+    }
+
+    /** Removes every entry from the map */
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    /** Returns the keys of the map, in no particular order */
+    @SuppressWarnings("unchecked")
+    public ArrayList<K> keys() {
+        ArrayList<K> res = new ArrayList<>(size);
+        for(int i=0; i<keys.length; i++)
+            if (keys[i] != null) { res.add((K)keys[i]); }
+        return res;
+    }
+
+    /** Returns the slot holding a key, or the empty slot it would go in */
+    private int slot(Object key) {
+        int h = key.hashCode() * 0x9E3779B9, i = (h ^ (h >>> 16)) & mask;
+        while(keys[i] != null && !keys[i].equals(key)) { i = (i+1) & mask; }
+        return i;
+    }
+
+    /** Doubles the size of the table, re-inserting every entry */
+    private void grow() {
+        Object[] oKeys = keys;
+        int[] oVals = vals;
+
+        keys = new Object[oKeys.length*2];
+        vals = new int[oVals.length*2];
+        mask = keys.length-1;
+
+        for(int i=0; i<oKeys.length; i++)
+            if (oKeys[i] != null) {
+                int s = slot(oKeys[i]);
+                keys[s] = oKeys[i];
+                vals[s] = oVals[i];
+            }
+    }
+}
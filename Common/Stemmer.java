@@ -19,14 +19,32 @@
    Release 3
    Considerably revised 4/9/00 in the light of many helpful suggestions
    from Brian Goetz of Quiotix Corporation (brian@quiotix.com).
+
+   ECU-4130 (18 October 2026)
+   Shared by Assignments 02 and 03 from ../Common. The buffer now doubles
+   when it grows, and stem(char[], int, int, char[], int) stems a slice of
+   a caller's buffer into another without allocating, so one Stemmer can be
+   reused for every word. The stemming steps themselves are unchanged. The
+   main method benchmarks throughput in words/sec.
 */
 
+// Import statements
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+
 /**
   * Stemmer, implementing the Porter Stemming Algorithm
   *
   * The Stemmer class transforms a word into its root form.  The input
   * word can be provided a character at time (by calling add()), or at once
   * by calling one of the various stem(something) methods.
+  *
+  * A Stemmer isn't thread-safe; threads that stem words should each have
+  * their own.
   */
 
 public class Stemmer
@@ -35,24 +53,33 @@ public class Stemmer
                i_end, /* offset to end of stemmed word */
                j, k;
    private static final int INC = 50;
-                     /* unit of size whereby b is increased */
+                     /* initial size of b, which doubles as it grows */
    public Stemmer()
    {  b = new char[INC];
       i = 0;
       i_end = 0;
    }
 
+   /** Makes sure b can hold n characters, doubling it as needed. */
+
+   private void ensure(int n)
+   {  if (n > b.length) b = Arrays.copyOf(b, Math.max(n, 2*b.length));
+   }
+
+   /**
+    * Clears any characters added to the Stemmer, so the next word can be
+    * added from scratch.
+    */
+
+   public void reset() { i = 0; i_end = 0; }
+
    /**
     * Add a character to the word being stemmed.  When you are finished
     * adding characters, you can call stem(void) to stem the word.
     */
 
    public void add(char ch)
-   {  if (i == b.length)
-      {  char[] new_b = new char[i+INC];
-         for (int c = 0; c < i; c++) new_b[c] = b[c];
-         b = new_b;
-      }
+   {  ensure(i+1);
       b[i++] = ch;
    }
 
@@ -63,12 +90,41 @@ public class Stemmer
     */
 
    public void add(char[] w, int wLen)
-   {  if (i+wLen >= b.length)
-      {  char[] new_b = new char[i+wLen+INC];
-         for (int c = 0; c < i; c++) new_b[c] = b[c];
-         b = new_b;
-      }
-      for (int c = 0; c < wLen; c++) b[i++] = w[c];
+   {  ensure(i+wLen+1);
+      System.arraycopy(w, 0, b, i, wLen);
+      i += wLen;
+   }
+
+   /**
+    * Stems the len characters of buf starting at off, and copies the stem
+    * into out starting at outOff.  Nothing is allocated once the Stemmer's
+    * buffer is large enough, and the Stemmer is ready for the next word as
+    * soon as this returns.  A stem is never longer than its word, so out
+    * needs room for len characters.  buf and out may be the same array.
+    * Returns the length of the stem.
+    */
+
+   public int stem(char[] buf, int off, int len, char[] out, int outOff)
+   {  ensure(len+1);
+      System.arraycopy(buf, off, b, 0, len);
+      i = len;
+      stem();
+      System.arraycopy(b, 0, out, outOff, i_end);
+      return i_end;
+   }
+
+   /**
+    * Stems a word given as a String, copying its characters straight into
+    * the Stemmer's buffer.  The only allocation is the String returned.
+    */
+
+   public String stem(String w)
+   {  int len = w.length();
+      ensure(len+1);
+      w.getChars(0, len, b, 0);
+      i = len;
+      stem();
+      return toString();
    }
 
    /**
@@ -344,4 +400,67 @@ public class Stemmer
       if (k > 1) { step1(); step2(); step3(); step4(); step5(); step6(); }
       i_end = k+1; i = 0;
    }
+
+   /**
+    * Benchmarks the stemmer on the words of a text file, printing how many
+    * words per second are stemmed when a new Stemmer and String are made for
+    * every word (as stemming was first done), and when one Stemmer stems
+    * slices of a shared buffer.  The stems of both are checked to match.
+    *
+    * Usage: java Stemmer <in-file> [rounds]
+    */
+
+   public static void main(String[] args) throws IOException
+   {  if (args.length < 1)
+      {  System.err.println("Usage: java Stemmer <in-file> [rounds]");
+         System.exit(1);
+      }
+      int rounds = (args.length > 1 ? Integer.parseInt(args[1]) : 5);
+
+      // Lowercase the words of the file, and pack them into one buffer
+      String text = new String(Files.readAllBytes(Paths.get(args[0])),
+         StandardCharsets.UTF_8).toLowerCase();
+      ArrayList<String> words = new ArrayList<>();
+      for (String w : text.split("[^a-z0-9-]+")) if (!w.isEmpty()) words.add(w);
+      char[] buf = new char[text.length()], out = new char[buf.length];
+      int[] offs = new int[words.size()+1];
+      for (int w = 0; w < words.size(); w++)
+      {  words.get(w).getChars(0, words.get(w).length(), buf, offs[w]);
+         offs[w+1] = offs[w] + words.get(w).length();
+      }
+
+      // Check that both ways of stemming give the same stems
+      Stemmer s = new Stemmer();
+      for (int w = 0; w < words.size(); w++)
+      {  Stemmer t = new Stemmer();
+         t.add(words.get(w).toCharArray(), words.get(w).length());
+         t.stem();
+         int n = s.stem(buf, offs[w], offs[w+1]-offs[w], out, 0);
+         if (!t.toString().equals(new String(out, 0, n)))
+         {  System.err.println("ERR: Stems differ for '"+words.get(w)+"'");
+            System.exit(1);
+         }
+      }
+
+      System.out.printf("%d words, %d rounds\n", words.size(), rounds);
+      for (int r = 1; r <= rounds; r++)
+      {  // sum keeps the stems from being optimized away
+         long sum = 0, t0 = System.nanoTime();
+         for (int w = 0; w < words.size(); w++)
+         {  Stemmer t = new Stemmer();
+            t.add(words.get(w).toCharArray(), words.get(w).length());
+            t.stem();
+            sum += t.toString().length();
+         }
+         long t1 = System.nanoTime();
+         for (int w = 0; w < words.size(); w++)
+            sum -= s.stem(buf, offs[w], offs[w+1]-offs[w], out, 0);
+         long t2 = System.nanoTime();
+
+         System.out.printf("  round %d: new Stemmer per word %,.0f words/sec;"+
+            " reused over slices %,.0f words/sec%s\n", r,
+            words.size()*1e9/(t1-t0), words.size()*1e9/(t2-t1),
+            (sum == 0 ? "" : " (stem lengths differ!)"));
+      }
+   }
 }
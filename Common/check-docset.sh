@@ -0,0 +1,90 @@
+#!/bin/sh
+# Regression check: intersects and unites DocSets for every mix of containers
+# (array x array, far apart in size or not, array x bitmap, bitmap x bitmap,
+# and chunks held by only one set), and fails if any result differs from
+# merging the same IDs as sorted int[] lists.
+# Usage: ./check-docset.sh
+cd "$(dirname "$0")" || exit 1
+DIR=$(mktemp -d) || exit 1
+trap 'rm -rf "$DIR"' EXIT
+
+cat > "$DIR/CheckDocSet.java" <<'EOF'
+import java.util.Arrays;
+import java.util.Random;
+
+public class CheckDocSet {
+    // Densities of a chunk: empty, a few IDs, an array container far smaller
+    // than the others, a full array container, and bitmaps
+    static final double[] DENSITY = { 0, 0.0003, 0.01, 0.0625, 0.2, 0.9 };
+
+    public static void main(String[] args) {
+        Random rand = new Random(4130);
+        int checks = 0;
+
+        for(double da : DENSITY)
+            for(double db : DENSITY)
+                for(int round=0; round<3; round++) {
+                    // Three chunks, the middle one with the densities swapped;
+                    // the larger set takes half the IDs of the smaller, so
+                    // they share IDs wherever they overlap
+                    int[] a = ids(rand, da, db), b = ids(rand, db, da);
+                    if (a.length < b.length) { b = or(b, half(rand, a)); }
+                    else { a = or(a, half(rand, b)); }
+                    check(a, b, "and", DocSet.and(DocSet.of(a), DocSet.of(b)), and(a, b));
+                    check(a, b, "or", DocSet.or(DocSet.of(a), DocSet.of(b)), or(a, b));
+                    checks += 2;
+                }
+
+        System.out.println("OK: "+checks+" DocSet intersections and unions");
+    }
+
+    static int[] ids(Random rand, double d0, double d1) {
+        IntList res = new IntList();
+        double[] d = { d0, d1, d0 };
+        for(int c=0; c<d.length; c++)
+            for(int lo=0; lo<65536; lo++)
+                if (rand.nextDouble() < d[c]) { res.add((c << 16) | lo); }
+        return res.toArray();
+    }
+
+    static int[] half(Random rand, int[] ids) {
+        IntList res = new IntList();
+        for(int id : ids)
+            if (rand.nextBoolean()) { res.add(id); }
+        return res.toArray();
+    }
+
+    static void check(int[] a, int[] b, String op, DocSet got, int[] want) {
+        if (Arrays.equals(got.toArray(), want) && got.cardinality() == want.length)
+            return;
+        System.out.println("FAIL: DocSet."+op+" of "+a.length+" and "+b.length+
+            " IDs gave "+got.cardinality()+" IDs rather than "+want.length);
+        System.exit(1);
+    }
+
+    static int[] and(int[] a, int[] b) {
+        IntList res = new IntList();
+        for(int i=0, j=0; i<a.length && j<b.length; ) {
+            if (a[i] == b[j]) { res.add(a[i]); i++; j++; }
+            else if (a[i] < b[j]) { i++; } else { j++; }
+        }
+        return res.toArray();
+    }
+
+    static int[] or(int[] a, int[] b) {
+        IntList res = new IntList();
+        int i = 0, j = 0;
+        while(i < a.length && j < b.length) {
+            if (a[i] == b[j]) { res.add(a[i]); i++; j++; }
+            else if (a[i] < b[j]) { res.add(a[i++]); }
+            else { res.add(b[j++]); }
+        }
+        while(i < a.length) { res.add(a[i++]); }
+        while(j < b.length) { res.add(b[j++]); }
+        return res.toArray();
+    }
+}
+EOF
+
+javac -d "$DIR" "$DIR/CheckDocSet.java" DocSet.java IntList.java || exit 1
+java -cp "$DIR" CheckDocSet